@@ -1,10 +1,11 @@
 package org.jenkinsci.plugins.displayurlapi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
-import hudson.Util;
 import hudson.model.Job;
 import hudson.model.Run;
+import java.lang.reflect.Method;
 
 /**
  * Display URL Provider for the Classical Jenkins UI
@@ -12,6 +13,31 @@ import hudson.model.Run;
 @Extension
 public class ClassicDisplayURLProvider extends DisplayURLProvider {
 
+    /**
+     * Whether a provider class inherits all its URLs from this class.
+     */
+    private static final ClassValue<Boolean> DEFAULT_URLS = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return isInherited(type.getMethod("getRoot"))
+                        && isInherited(type.getMethod("getJobURL", Job.class))
+                        && isInherited(type.getMethod("getRunURL", Run.class))
+                        && isInherited(type.getMethod("getArtifactsURL", Run.class))
+                        && isInherited(type.getMethod("getChangesURL", Run.class))
+                        && isInherited(type.getMethod("getTestsURL", Run.class))
+                        && isInherited(type.getMethod("getRunDisplayURLs", Run.class));
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+
+        private boolean isInherited(Method method) {
+            return method.getDeclaringClass() == ClassicDisplayURLProvider.class
+                    || method.getDeclaringClass() == DisplayURLProvider.class;
+        }
+    };
+
     @Override
     @NonNull
     public String getDisplayName() {
@@ -27,7 +53,7 @@ public class ClassicDisplayURLProvider extends DisplayURLProvider {
     @Override
     @NonNull
     public String getRunURL(Run<?, ?> run) {
-        return getRoot() + Util.encode(run.getUrl());
+        return getRoot() + ItemURLCache.encodedUrl(run);
     }
 
     @Override
@@ -45,6 +71,23 @@ public class ClassicDisplayURLProvider extends DisplayURLProvider {
     @Override
     @NonNull
     public String getJobURL(Job<?, ?> job) {
-        return getRoot() + Util.encode(job.getUrl());
+        return getRoot() + ItemURLCache.encodedUrl(job);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Returns {@code null} for subclasses customising any of the URLs, as they may need the run, and for jobs whose
+     * runs may not have the default URL, i.e. the URL of their job followed by their number.
+     */
+    @Override
+    @CheckForNull
+    public RunDisplayURLs getRunDisplayURLs(Job<?, ?> job, int number) {
+        if (!DEFAULT_URLS.get(getClass()) || !ItemURLCache.hasDefaultRunURLs(job.getClass())) {
+            return null;
+        }
+        String jobURL = getJobURL(job);
+        String runURL = jobURL + number + '/';
+        return new RunDisplayURLs(runURL, runURL + "artifact", jobURL + "changes", runURL + "testReport");
     }
 }
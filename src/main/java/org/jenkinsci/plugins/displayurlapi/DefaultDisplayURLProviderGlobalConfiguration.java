@@ -64,17 +64,12 @@ public class DefaultDisplayURLProviderGlobalConfiguration extends GlobalConfigur
             providerId = null;
         }
         this.providerId = providerId;
+        PreferredProviderCache.invalidateAll();
         save();
     }
 
     public @CheckForNull DisplayURLProvider getConfiguredProvider() {
-        if (providerId == null) {
-            return null;
-        }
-        return DisplayURLProvider.all().stream()
-            .filter(provider -> provider.getClass().getName().equals(providerId))
-            .findFirst()
-            .orElse(null);
+        return ProviderRegistry.get().byClassName(providerId);
     }
 
     public static DefaultDisplayURLProviderGlobalConfiguration get() {
@@ -1,7 +1,5 @@
 package org.jenkinsci.plugins.displayurlapi;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.PluginManager;
@@ -11,19 +9,24 @@ import hudson.model.Queue;
 import hudson.model.Run;
 import java.io.Closeable;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Stack;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import jenkins.model.Jenkins;
 
 /**
  * Holds contextual information that can be used when generating an URL for display. On the current thread, each context
- * is layered with the most specific context information being provided when queried.
+ * is layered with the most specific context information being provided when queried. Each layer starts out with the
+ * information of the enclosing layer, so that querying does not depend on how deeply the contexts are nested.
+ * <p>
+ * Unless provided, the {@link #plugin()} is inferred from the calling stack the first time it is asked for, which is
+ * typically from within {@link DisplayURLDecorator#parameters(DisplayURLContext)} while the URL is being generated.
  */
 public class DisplayURLContext implements Closeable {
 
@@ -34,15 +37,29 @@ public class DisplayURLContext implements Closeable {
     /**
      * The current thread's context.
      */
-    private static ThreadLocal<Stack<DisplayURLContext>> context = new ThreadLocal<>();
+    private static final ThreadLocal<Frames> context = ThreadLocal.withInitial(Frames::new);
 
-    private static final Cache<String, Optional<PluginWrapper>> CACHE =
-        CacheBuilder.newBuilder()
-            .maximumSize(Integer.getInteger( DisplayURLContext.class.getName() + ".cache.size", 1000))
-            // cache ttl default 5 minutes
-            .expireAfterAccess( Integer.getInteger( DisplayURLContext.class.getName() + ".cache.ttl", 300000), TimeUnit.MILLISECONDS)
-            //.weakValues() not sure we need this as entries are pluginWrapper will never be garbaged
-            .build();
+    /**
+     * The plugin each class belongs to, for the current set of plugins.
+     */
+    @CheckForNull
+    private static volatile PluginIndex index;
+
+    /**
+     * The maximum number of stack frames to inspect when inferring the plugin.
+     */
+    private static final int GUESS_MAX_DEPTH =
+        Integer.getInteger(DisplayURLContext.class.getName() + ".guess.maxDepth", 256);
+
+    /**
+     * Times inferring the plugin, by plugin.
+     */
+    private static final DisplayURLMetrics.Metric GUESS_METRIC = DisplayURLMetrics.metric("attribution.guess");
+
+    /**
+     * Walks the calling stack retaining the {@link Class} of each frame, so that no class loading is needed.
+     */
+    private static final StackWalker WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
 
     /**
      * Class names that we expect to be in the stack trace for calls to {@link #open()}.
@@ -53,7 +70,26 @@ public class DisplayURLContext implements Closeable {
             DisplayURLProvider.DisplayURLProviderImpl.class.getName()
     ));
 
-    private final DisplayURLContext parent;
+    /**
+     * Class names of the frames generating and decorating URLs, the plugin asking for the URL is below them.
+     */
+    private static final Set<String> GENERATING_CLASS_NAMES = new HashSet<>(Arrays.asList(
+            DisplayURLDecorator.class.getName(),
+            DisplayURLDecorator.class.getName() + "$Pipeline",
+            DisplayURLProvider.class.getName(),
+            DisplayURLProvider.DisplayURLProviderImpl.class.getName()
+    ));
+
+    /**
+     * No custom attributes.
+     */
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    /**
+     * The enclosing context or {@code null} if this is the outermost context.
+     */
+    @CheckForNull
+    private DisplayURLContext parent;
     /**
      * The {@link Queue.Task}.
      */
@@ -85,75 +121,148 @@ public class DisplayURLContext implements Closeable {
     private PluginWrapper plugin;
 
     /**
-     * And additional custom attributes.
+     * Whether the {@link #plugin} is to be inferred when first asked for.
      */
-    @CheckForNull
-    private Map<String, String> attributes;
+    private boolean guess;
+
+    /**
+     * And additional custom attributes, as alternating names and values. Never modified in place as the array is
+     * shared with nested contexts.
+     */
+    @NonNull
+    private String[] attributes = NO_ATTRIBUTES;
 
     /**
      * Constructor.
      */
-    private DisplayURLContext(DisplayURLContext parent) {
+    private DisplayURLContext() {
+    }
+
+    /**
+     * Clears this context so that it can be reused by a subsequent {@link #open()} on the same thread.
+     */
+    private void reset() {
+        parent = null;
+        task = null;
+        executable = null;
+        job = null;
+        run = null;
+        plugin = null;
+        guess = false;
+        attributes = NO_ATTRIBUTES;
+    }
+
+    /**
+     * Starts this context with the information of the enclosing context.
+     *
+     * @param parent the enclosing context or {@code null} if this is the outermost context.
+     */
+    private void inherit(@CheckForNull DisplayURLContext parent) {
         this.parent = parent;
+        if (parent != null) {
+            task = parent.task;
+            executable = parent.executable;
+            job = parent.job;
+            run = parent.run;
+            plugin = parent.plugin;
+            guess = parent.guess;
+            attributes = parent.attributes;
+        }
     }
 
     /**
-     * Try and infer the plugin by looking in the calling stack trace for the first plugin that is not this one.
+     * Try and infer the plugin by walking the calling stack, see {@link #firstPlugin(Stream, Function)}. Nothing is
+     * copied and the result is shared with the enclosing contexts the guess was inherited from.
      */
     private void guessPlugin() {
-        StackTraceElement[] stack = (new Throwable()).getStackTrace();
+        long start = DisplayURLMetrics.start();
         PluginManager manager = Jenkins.get().getPluginManager();
-        ClassLoader loader = manager.uberClassLoader;
-        for (StackTraceElement frame : stack) {
-            String cname = frame.getClassName();
-            if (ourPluginClassNames.contains(cname)) {
+        PluginWrapper plugin = WALKER.walk(frames -> firstPlugin(
+                frames.limit(GUESS_MAX_DEPTH).map(StackWalker.StackFrame::getDeclaringClass),
+                clazz -> whichPlugin(manager, clazz)));
+        GUESS_METRIC.record(plugin == null ? null : plugin.getShortName(), start);
+        for (DisplayURLContext context = this; context != null && context.guess; context = context.parent) {
+            context.plugin = plugin;
+            context.guess = false;
+        }
+    }
+
+    /**
+     * Finds the plugin asking for a URL in the calling stack: the first plugin below the frames generating and
+     * decorating the URL, where the walk stops, or if there are none (e.g. when capturing the context) the first plugin
+     * calling us.
+     *
+     * @param callers the classes of the calling stack, innermost first.
+     * @param whichPlugin looks up the plugin that a class belongs to.
+     * @return the plugin or {@code null} if none.
+     */
+    @CheckForNull
+    static PluginWrapper firstPlugin(@NonNull Stream<Class<?>> callers,
+                                     @NonNull Function<Class<?>, PluginWrapper> whichPlugin) {
+        PluginWrapper caller = null;
+        boolean generating = false;
+        for (Iterator<Class<?>> i = callers.iterator(); i.hasNext(); ) {
+            Class<?> clazz = i.next();
+            if (GENERATING_CLASS_NAMES.contains(clazz.getName())) {
+                // whatever called us so far was decorating the URL on behalf of the plugin below
+                generating = true;
+                caller = null;
                 continue;
             }
-            Optional<PluginWrapper> wrapper = CACHE.getIfPresent(cname);
-            if(wrapper != null){
-                wrapper.ifPresent(pluginWrapper -> plugin = pluginWrapper);
-            } else
-            {
-                try {
-                    Class<?> clazz = loader.loadClass( cname );
-                    PluginWrapper pluginWrapper = manager.whichPlugin( clazz );
-                    if ( pluginWrapper != null && !OUR_PLUGIN_NAME.equals( pluginWrapper.getShortName() ) ) {
-                        plugin = pluginWrapper;
-                        CACHE.put( cname, Optional.of( pluginWrapper ) );
-                        break;
-                    } else {
-                        CACHE.put( cname, Optional.empty() );
-                    }
-                } catch ( ClassNotFoundException e ) {
-                    // ignore, it's not a plugin
-                }
+            if (caller != null || ourPluginClassNames.contains(clazz.getName())) {
+                // only look for frames generating the URL once the first plugin calling us is known
+                continue;
             }
+            PluginWrapper plugin = whichPlugin.apply(clazz);
+            if (plugin != null && generating) {
+                return plugin;
+            }
+            caller = plugin;
         }
+        return caller;
     }
 
+    /**
+     * Looks up the plugin that a class belongs to.
+     *
+     * @param manager the plugin manager.
+     * @param clazz the class.
+     * @return the plugin or {@code null} if the class does not belong to a plugin or belongs to this plugin.
+     */
+    @CheckForNull
+    private static PluginWrapper whichPlugin(PluginManager manager, Class<?> clazz) {
+        PluginIndex index = DisplayURLContext.index;
+        int plugins = manager.getPlugins().size();
+        if (index == null || index.manager != manager || index.plugins != plugins) {
+            // first use, Jenkins was restarted or plugins were dynamically installed
+            index = new PluginIndex(manager, plugins);
+            DisplayURLContext.index = index;
+        }
+        DisplayURLMetrics.ATTRIBUTION_LOOKUPS.increment();
+        return index.get(clazz).orElse(null);
+    }
 
     /**
      * Opens a {@link DisplayURLContext} for the current thread.
-     * @param guessPlugin try to infer the current plugin (resource intensive as requires a stack trace and class loading). Use {@code false} if you know the caller will always be Jenkins core.
+     * <p>
+     * Contexts are recycled: once {@link #close() closed}, a context is cleared and handed out again by a later call
+     * on the same thread, so references to it (or to any context nested within it) must not be kept after the
+     * try-with-resources block. Use {@link #capture()} to keep the information for later.
+     * @param guessPlugin try to infer the current plugin when it is first asked for (resource intensive as requires walking the calling stack). Use {@code false} if you know the caller will always be Jenkins core.
      * @return the {@link DisplayURLContext}.
      */
     @NonNull
     public static DisplayURLContext open(boolean guessPlugin) {
-        Stack<DisplayURLContext> stack = DisplayURLContext.context.get();
-        if (stack == null) {
-            stack = new Stack<>();
-            DisplayURLContext.context.set(stack);
-        }
-        DisplayURLContext context = new DisplayURLContext(stack.isEmpty() ? null : stack.peek());
-        if (stack.isEmpty() && guessPlugin) {
-            context.guessPlugin();
+        DisplayURLContext context = DisplayURLContext.context.get().push();
+        if (context.parent == null && guessPlugin) {
+            context.guess = true;
         }
-        stack.push(context);
         return context;
     }
 
     /**
-     * Opens a {@link DisplayURLContext} for the current thread.
+     * Opens a {@link DisplayURLContext} for the current thread. See {@link #open(boolean)} for the lifecycle of the
+     * returned context.
      *
      * @return the {@link DisplayURLContext}.
      */
@@ -162,6 +271,24 @@ public class DisplayURLContext implements Closeable {
         return open(true);
     }
 
+    /**
+     * Captures the current thread's context so that it can be {@link Snapshot#restore() restored} on another thread,
+     * for example when notifications are sent from a thread pool. If there is no context on the current thread the
+     * calling plugin is inferred as {@link #open()} would.
+     *
+     * @return the {@link Snapshot}.
+     */
+    @NonNull
+    public static Snapshot capture() {
+        DisplayURLContext current = context.get().peek();
+        if (current != null) {
+            return new Snapshot(current);
+        }
+        try (DisplayURLContext ctx = open(true)) {
+            return new Snapshot(ctx);
+        }
+    }
+
     /**
      * Uses the supplied {@link Queue.Task} to fill in as much of the context as possible. If the task implements {@link
      * Job} then the {@link #job()} will also be set. Prefer calling {@link #job(Job)} if you know the task is a {@link
@@ -172,7 +299,7 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext task(@CheckForNull Queue.Task task) {
-        this.task = task;
+        this.task = task == null && parent != null ? parent.task : task;
         if (task instanceof Job) {
             this.job = (Job<?, ?>) task;
         }
@@ -190,7 +317,7 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext executable(@CheckForNull Queue.Executable executable) {
-        this.executable = executable;
+        this.executable = executable == null && parent != null ? parent.executable : executable;
         if (executable != null) {
             this.task = executable.getParent().getOwnerTask();
         }
@@ -210,7 +337,7 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext job(@CheckForNull Job<?, ?> job) {
-        this.job = job;
+        this.job = job == null && parent != null ? parent.job : job;
         if (job instanceof Queue.Task) {
             this.task = (Queue.Task) job;
         }
@@ -227,7 +354,7 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext run(@CheckForNull Run<?, ?> run) {
-        this.run = run;
+        this.run = run == null && parent != null ? parent.run : run;
         if (run != null) {
             if (run instanceof Queue.Executable) {
                 this.executable = (Queue.Executable) run;
@@ -245,7 +372,13 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext plugin(@CheckForNull PluginWrapper plugin) {
-        this.plugin = plugin;
+        if (plugin == null && parent != null) {
+            this.plugin = parent.plugin;
+            this.guess = parent.guess;
+        } else {
+            this.plugin = plugin;
+            this.guess = false;
+        }
         return this;
     }
 
@@ -258,10 +391,19 @@ public class DisplayURLContext implements Closeable {
      */
     @NonNull
     public DisplayURLContext attribute(String name, String value) {
-        if (this.attributes == null) {
-            this.attributes = new HashMap<>();
+        String[] attributes = this.attributes;
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (Objects.equals(name, attributes[i])) {
+                attributes = attributes.clone();
+                attributes[i + 1] = value;
+                this.attributes = attributes;
+                return this;
+            }
         }
-        this.attributes.put(name, value);
+        attributes = Arrays.copyOf(attributes, attributes.length + 2);
+        attributes[attributes.length - 2] = name;
+        attributes[attributes.length - 1] = value;
+        this.attributes = attributes;
         return this;
     }
 
@@ -272,9 +414,6 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public Queue.Task task() {
-        if (task == null && parent != null) {
-            return parent.task();
-        }
         return task;
     }
 
@@ -285,9 +424,6 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public Queue.Executable executable() {
-        if (executable == null && parent != null) {
-            return parent.executable();
-        }
         return executable;
     }
 
@@ -298,9 +434,6 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public Job<?, ?> job() {
-        if (job == null && parent != null) {
-            return parent.job();
-        }
         return job;
     }
 
@@ -311,9 +444,6 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public Run<?, ?> run() {
-        if (run == null && parent != null) {
-            return parent.run();
-        }
         return run;
     }
 
@@ -325,8 +455,14 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public PluginWrapper plugin() {
-        if (plugin == null && parent != null) {
-            return parent.plugin();
+        if (guess) {
+            if (parent != null && !parent.guess) {
+                // the enclosing context was resolved in the meantime
+                plugin = parent.plugin;
+                guess = false;
+            } else {
+                guessPlugin();
+            }
         }
         return plugin;
     }
@@ -339,23 +475,186 @@ public class DisplayURLContext implements Closeable {
      */
     @CheckForNull
     public String attribute(String name) {
-        if ((attributes == null || !attributes.containsKey(name)) && parent != null) {
-            return parent.attribute(name);
+        String[] attributes = this.attributes;
+        for (int i = 0; i < attributes.length; i += 2) {
+            if (Objects.equals(name, attributes[i])) {
+                return attributes[i + 1];
+            }
         }
-        return attributes == null ? null : attributes.get(name);
+        return null;
     }
 
     /**
-     * {@inheritDoc}
+     * Closes this context. The context must not be used once closed as it will be recycled by the next {@link #open()}
+     * on the same thread.
      */
     @Override
     public void close() {
-        Stack<DisplayURLContext> stack = context.get();
-        if (stack != null) {
-            stack.pop();
-            if (stack.isEmpty()) {
-                context.remove();
+        context.get().pop();
+    }
+
+    /**
+     * Remembers which plugin (if any other than this one) a class belongs to. Lookups are per {@link Class} and lock
+     * free, misses are remembered as well, and entries go away with their class loader. As the values depend on the
+     * set of plugins known to the {@link PluginManager}, a new index is used whenever that changes.
+     */
+    private static final class PluginIndex extends ClassValue<Optional<PluginWrapper>> {
+
+        private final PluginManager manager;
+
+        private final int plugins;
+
+        private PluginIndex(PluginManager manager, int plugins) {
+            this.manager = manager;
+            this.plugins = plugins;
+        }
+
+        @Override
+        protected Optional<PluginWrapper> computeValue(Class<?> type) {
+            DisplayURLMetrics.ATTRIBUTION_MISSES.increment();
+            PluginWrapper plugin = manager.whichPlugin(type);
+            if (plugin == null || OUR_PLUGIN_NAME.equals(plugin.getShortName())) {
+                return Optional.empty();
+            }
+            return Optional.of(plugin);
+        }
+    }
+
+    /**
+     * The stack of contexts of a thread. Only ever accessed by its own thread so no locking is required, and the
+     * contexts are recycled so that nested {@link #open()} and {@link #close()} pairs do not allocate.
+     */
+    private static final class Frames {
+
+        private DisplayURLContext[] stack = new DisplayURLContext[4];
+
+        private int depth;
+
+        DisplayURLContext push() {
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
             }
+            DisplayURLContext context = stack[depth];
+            if (context == null) {
+                context = new DisplayURLContext();
+                stack[depth] = context;
+            }
+            context.inherit(depth == 0 ? null : stack[depth - 1]);
+            depth++;
+            return context;
+        }
+
+        @CheckForNull
+        DisplayURLContext peek() {
+            return depth == 0 ? null : stack[depth - 1];
+        }
+
+        void pop() {
+            if (depth > 0) {
+                // do not hold on to runs, jobs, etc. once they are no longer needed
+                stack[--depth].reset();
+            }
+        }
+    }
+
+    /**
+     * An immutable copy of a {@link DisplayURLContext} that can be handed over to another thread. The plugin is inferred
+     * when capturing, while the calling stack is still available, and shared with the captured context, so it is only
+     * ever resolved once.
+     */
+    public static final class Snapshot {
+
+        @CheckForNull
+        private final Queue.Task task;
+
+        @CheckForNull
+        private final Queue.Executable executable;
+
+        @CheckForNull
+        private final Job<?, ?> job;
+
+        @CheckForNull
+        private final Run<?, ?> run;
+
+        @CheckForNull
+        private final PluginWrapper plugin;
+
+        @NonNull
+        private final String[] attributes;
+
+        private Snapshot(DisplayURLContext context) {
+            this.task = context.task;
+            this.executable = context.executable;
+            this.job = context.job;
+            this.run = context.run;
+            this.plugin = context.plugin();
+            this.attributes = context.attributes;
+        }
+
+        /**
+         * Opens a {@link DisplayURLContext} for the current thread holding the captured information. Information that
+         * was not captured is inherited from any enclosing context on the current thread as usual. The plugin is never
+         * inferred from the current thread.
+         *
+         * @return the {@link DisplayURLContext}, to be closed like any other.
+         */
+        @NonNull
+        public DisplayURLContext restore() {
+            DisplayURLContext ctx = context.get().push();
+            if (task != null) {
+                ctx.task = task;
+            }
+            if (executable != null) {
+                ctx.executable = executable;
+            }
+            if (job != null) {
+                ctx.job = job;
+            }
+            if (run != null) {
+                ctx.run = run;
+            }
+            if (plugin != null) {
+                ctx.plugin = plugin;
+            }
+            if (ctx.attributes.length == 0) {
+                ctx.attributes = attributes;
+            } else {
+                for (int i = 0; i < attributes.length; i += 2) {
+                    ctx.attribute(attributes[i], attributes[i + 1]);
+                }
+            }
+            return ctx;
+        }
+
+        /**
+         * Wraps a task so that it runs within this context.
+         *
+         * @param task the task.
+         * @return the wrapped task.
+         */
+        @NonNull
+        public Runnable wrap(@NonNull Runnable task) {
+            return () -> {
+                try (DisplayURLContext ctx = restore()) {
+                    task.run();
+                }
+            };
+        }
+
+        /**
+         * Wraps a task so that it runs within this context.
+         *
+         * @param task the task.
+         * @param <V> the result type.
+         * @return the wrapped task.
+         */
+        @NonNull
+        public <V> Callable<V> wrap(@NonNull Callable<V> task) {
+            return () -> {
+                try (DisplayURLContext ctx = restore()) {
+                    return task.call();
+                }
+            };
         }
     }
 }
@@ -3,11 +3,18 @@ package org.jenkinsci.plugins.displayurlapi;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.ExtensionList;
+import hudson.ExtensionListListener;
 import hudson.ExtensionPoint;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
 /**
@@ -17,6 +24,41 @@ import java.util.TreeMap;
  */
 public abstract class DisplayURLDecorator implements ExtensionPoint {
 
+    /**
+     * The compiled decorators, or {@code null} when they need to be (re)compiled.
+     */
+    @CheckForNull
+    private static volatile Pipeline pipeline;
+
+    /**
+     * The extension list we are listening to for changes.
+     */
+    @CheckForNull
+    private static ExtensionList<DisplayURLDecorator> listening;
+
+    /**
+     * Times collecting the {@link #parameters(DisplayURLContext)}, by decorator.
+     */
+    private static final DisplayURLMetrics.Metric PARAMETERS_METRIC = DisplayURLMetrics.metric("decorator.parameters");
+
+    /**
+     * Whether a decorator class overrides {@link #parameters(DisplayURLContext)}, i.e. depends on the context.
+     */
+    private static final ClassValue<Boolean> CONTEXT_DEPENDENT = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null && c != DisplayURLDecorator.class; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod("parameters", DisplayURLContext.class);
+                    return true;
+                } catch (NoSuchMethodException e) {
+                    // inherited, keep looking
+                }
+            }
+            return false;
+        }
+    };
+
     /**
      * Returns a map of query parameters to decorate the URL with. The keys and values will be URL encoded for you. A
      * {@code null} value will translate as a query parameter without a value.
@@ -25,7 +67,37 @@ public abstract class DisplayURLDecorator implements ExtensionPoint {
      * @return the map of parameters to append to the URL.
      */
     @NonNull
-    protected abstract Map<String, String> parameters(@NonNull DisplayURLContext context);
+    protected Map<String, String> parameters(@NonNull DisplayURLContext context) {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Returns a map of query parameters to decorate every URL with, irrespective of the context. This is only called
+     * when the decorators are loaded and the parameters are encoded once, so prefer this over
+     * {@link #parameters(DisplayURLContext)} for anything that does not depend on the context. For duplicate keys the
+     * value from {@link #parameters(DisplayURLContext)} wins. When none of the decorators override
+     * {@link #parameters(DisplayURLContext)}, URLs are decorated without opening a {@link DisplayURLContext} at all.
+     * <p>
+     * The result is kept until the decorators change, so a decorator whose static parameters come from its
+     * configuration must call {@link #invalidate()} whenever that changes.
+     *
+     * @return the map of parameters to append to every URL.
+     */
+    @NonNull
+    protected Map<String, String> staticParameters() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Checks if any installed decorator overrides {@link #parameters(DisplayURLContext)}, when none does the
+     * {@link DisplayURLContext} is irrelevant and URLs only need the {@link #staticParameters()}, see
+     * {@link #decorate(String)}.
+     *
+     * @return {@code true} if at least one decorator depends on the context.
+     */
+    static boolean needsContext() {
+        return pipeline().contextual.length > 0;
+    }
 
     /**
      * Decorates the URL for the provided context.
@@ -36,57 +108,74 @@ public abstract class DisplayURLDecorator implements ExtensionPoint {
      */
     @NonNull
     public static String decorate(@NonNull DisplayURLContext context, @NonNull String url) {
-        ExtensionList<DisplayURLDecorator> extensionList = ExtensionList
-            .lookup(DisplayURLDecorator.class);
-        if (extensionList.isEmpty()) {
-            return url;
-        }
-        Map<String, String> parameters = new TreeMap<>();
-        // the extension with the highest ordinal wins for duplicate query parameters
-        for (DisplayURLDecorator decorator : extensionList.reverseView()) {
-            parameters.putAll(fixNull(decorator.parameters(context)));
-        }
-        if (parameters.isEmpty()) {
-            return url;
-        }
-        Map<String, String> encodedParameters = new TreeMap<>();
-        for (Map.Entry<String, String> p : parameters.entrySet()) {
-            encodedParameters
-                .put(encode(p.getKey()), p.getValue() == null ? null : encode(p.getValue()));
+        return pipeline().decoration(context).apply(url);
+    }
+
+    /**
+     * Decorates the URL with the {@link #staticParameters()} only, for when no decorator {@link #needsContext()}.
+     *
+     * @param url the URL to decorate.
+     * @return the decorated URL.
+     */
+    @NonNull
+    static String decorate(@NonNull String url) {
+        return pipeline().staticDecoration.apply(url);
+    }
+
+    /**
+     * Decorates all the URLs of a run for the provided context, collecting the parameters only once.
+     *
+     * @param context the context, or {@code null} to only decorate with the {@link #staticParameters()} when no
+     *                decorator {@link #needsContext()}.
+     * @param urls the URLs to decorate.
+     * @return the decorated URLs.
+     */
+    @NonNull
+    static RunDisplayURLs decorate(@CheckForNull DisplayURLContext context, @NonNull RunDisplayURLs urls) {
+        Pipeline pipeline = pipeline();
+        Decoration decoration = context == null ? pipeline.staticDecoration : pipeline.decoration(context);
+        if (decoration.keys.length == 0) {
+            return urls;
         }
-        StringBuilder result = new StringBuilder(2083); // maximum URL length
-        char sep = '?';
-        int queryStart = url.indexOf(sep);
-        if (queryStart == -1) {
-            // quick win!
-            result.append(url);
-        } else {
-            // ok this is the hard one, we need to build up the url and strip any duplicate query parameters that we
-            // are decorating with
-            result.append(url, 0, queryStart);
-            for (String pair : url.substring(queryStart + 1).split("&")) {
-                int index = pair.indexOf('=');
-                if (index == -1 && encodedParameters.containsKey(pair)) {
-                    // query parameter without value that we are decorating with
-                    continue;
-                }
-                if (index > 0 && encodedParameters.containsKey(pair.substring(0, index))) {
-                    // query parameter with value that we are decorating with
-                    continue;
-                }
-                result.append(sep);
-                result.append(pair);
-                sep = '&';
-            }
+        return new RunDisplayURLs(decoration.apply(urls.getRunURL()), decoration.apply(urls.getArtifactsURL()),
+                decoration.apply(urls.getChangesURL()), decoration.apply(urls.getTestsURL()));
+    }
+
+    /**
+     * Gets the compiled decorators, compiling them if the extension list changed (or belongs to a different Jenkins).
+     *
+     * @return the compiled decorators.
+     */
+    @NonNull
+    private static Pipeline pipeline() {
+        ExtensionList<DisplayURLDecorator> extensionList = ExtensionList.lookup(DisplayURLDecorator.class);
+        Pipeline pipeline = DisplayURLDecorator.pipeline;
+        if (pipeline != null && pipeline.source == extensionList) {
+            return pipeline;
         }
-        for (Map.Entry<String, String> p : encodedParameters.entrySet()) {
-            result.append(sep).append(p.getKey());
-            if (p.getValue() != null) {
-                result.append('=').append(p.getValue());
+        synchronized (DisplayURLDecorator.class) {
+            if (listening != extensionList) {
+                extensionList.addListener(new ExtensionListListener() {
+                    @Override
+                    public void onChange() {
+                        invalidate();
+                    }
+                });
+                listening = extensionList;
             }
-            sep = '&';
+            pipeline = new Pipeline(extensionList);
+            DisplayURLDecorator.pipeline = pipeline;
+            return pipeline;
         }
-        return result.toString();
+    }
+
+    /**
+     * Discards the compiled decorators, so that the {@link #staticParameters()} are collected again for the next URL.
+     * This happens automatically when decorators are installed or removed, decorators need to call it when their
+     * static parameters change for any other reason, e.g. when they are reconfigured.
+     */
+    public static synchronized void invalidate() {
+        pipeline = null;
     }
 
     /**
@@ -116,4 +205,218 @@ public abstract class DisplayURLDecorator implements ExtensionPoint {
         }
     }
 
+    /**
+     * The decorators in the order in which their parameters are applied, i.e. lowest ordinal first so that the
+     * extension with the highest ordinal wins for duplicate query parameters, together with their pre-encoded
+     * {@link #staticParameters()}.
+     */
+    private static final class Pipeline {
+
+        private final ExtensionList<DisplayURLDecorator> source;
+
+        private final DisplayURLDecorator[] decorators;
+
+        /**
+         * The indices in {@link #decorators} of the decorators which override
+         * {@link DisplayURLDecorator#parameters(DisplayURLContext)}.
+         */
+        private final int[] contextual;
+
+        /**
+         * The index in {@link #decorators} of the decorator providing each static parameter.
+         */
+        private final Map<String, Integer> staticOwners = new HashMap<>();
+
+        /**
+         * The static parameters, encoded and sorted, as applied when there are no context dependent parameters.
+         */
+        private final Decoration staticDecoration;
+
+        private Pipeline(ExtensionList<DisplayURLDecorator> source) {
+            this.source = source;
+            // the same instance could be registered more than once, only its highest ordinal position matters
+            Set<DisplayURLDecorator> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<DisplayURLDecorator> ordered = new ArrayList<>();
+            for (DisplayURLDecorator decorator : source) {
+                if (seen.add(decorator)) {
+                    ordered.add(0, decorator);
+                }
+            }
+            this.decorators = ordered.toArray(new DisplayURLDecorator[0]);
+            int[] contextual = new int[decorators.length];
+            int count = 0;
+            for (int i = 0; i < decorators.length; i++) {
+                if (CONTEXT_DEPENDENT.get(decorators[i].getClass())) {
+                    contextual[count++] = i;
+                }
+            }
+            this.contextual = Arrays.copyOf(contextual, count);
+            Map<String, String> encodedParameters = new TreeMap<>();
+            for (int i = 0; i < decorators.length; i++) {
+                for (Map.Entry<String, String> p : fixNull(decorators[i].staticParameters()).entrySet()) {
+                    staticOwners.put(p.getKey(), i);
+                    encodedParameters.put(encode(p.getKey()), p.getValue() == null ? null : encode(p.getValue()));
+                }
+            }
+            this.staticDecoration = new Decoration(encodedParameters);
+        }
+
+        /**
+         * Collects the parameters for the provided context.
+         *
+         * @param context the context.
+         * @return the parameters to decorate URLs with.
+         */
+        @NonNull
+        Decoration decoration(@NonNull DisplayURLContext context) {
+            Map<String, String> parameters = null;
+            for (int i : contextual) {
+                long start = DisplayURLMetrics.start();
+                Map<String, String> decoratorParameters = fixNull(decorators[i].parameters(context));
+                PARAMETERS_METRIC.record(decorators[i].getClass().getName(), start);
+                for (Map.Entry<String, String> p : decoratorParameters.entrySet()) {
+                    Integer owner = staticOwners.get(p.getKey());
+                    if (owner != null && owner > i) {
+                        // a static parameter of an extension with a higher ordinal
+                        continue;
+                    }
+                    if (parameters == null) {
+                        parameters = new TreeMap<>();
+                    }
+                    parameters.put(p.getKey(), p.getValue());
+                }
+            }
+            if (parameters == null) {
+                return staticDecoration;
+            }
+            Map<String, String> encodedParameters = new TreeMap<>();
+            for (int i = 0; i < staticDecoration.keys.length; i++) {
+                encodedParameters.put(staticDecoration.keys[i], staticDecoration.values[i]);
+            }
+            for (String key : parameters.keySet()) {
+                if (staticOwners.containsKey(key)) {
+                    encodedParameters.remove(encode(key));
+                }
+            }
+            for (Map.Entry<String, String> p : parameters.entrySet()) {
+                encodedParameters.put(encode(p.getKey()), p.getValue() == null ? null : encode(p.getValue()));
+            }
+            return new Decoration(encodedParameters);
+        }
+    }
+
+    /**
+     * Encoded query parameters, ready to be appended to URLs.
+     */
+    private static final class Decoration {
+
+        /**
+         * The encoded parameter names, sorted.
+         */
+        private final String[] keys;
+
+        /**
+         * The encoded parameter values, {@code null} for parameters without a value.
+         */
+        private final String[] values;
+
+        /**
+         * The query string of all the parameters, without leading separator.
+         */
+        private final String query;
+
+        private Decoration(Map<String, String> encodedParameters) {
+            keys = new String[encodedParameters.size()];
+            values = new String[encodedParameters.size()];
+            StringBuilder query = new StringBuilder();
+            int i = 0;
+            for (Map.Entry<String, String> p : encodedParameters.entrySet()) {
+                keys[i] = p.getKey();
+                values[i] = p.getValue();
+                if (i > 0) {
+                    query.append('&');
+                }
+                query.append(p.getKey());
+                if (p.getValue() != null) {
+                    query.append('=').append(p.getValue());
+                }
+                i++;
+            }
+            this.query = query.toString();
+        }
+
+        /**
+         * Decorates the URL, replacing any existing query parameter with the same name. URLs that are already
+         * decorated with exactly these parameters are returned as is.
+         *
+         * @param url the URL to decorate.
+         * @return the decorated URL.
+         */
+        @NonNull
+        String apply(@NonNull String url) {
+            if (keys.length == 0) {
+                return url;
+            }
+            int queryStart = url.indexOf('?');
+            if (queryStart == -1) {
+                // quick win!
+                return url + '?' + query;
+            }
+            int end = url.length();
+            int tail = end - query.length();
+            if (tail > queryStart && url.startsWith(query, tail)
+                    && (tail - 1 == queryStart || url.charAt(tail - 1) == '&')
+                    && !decorates(url, queryStart + 1, tail - 1)) {
+                // already decorated
+                return url;
+            }
+            // ok this is the hard one, we need to copy the existing query and strip any duplicate query parameters
+            // that we are decorating with, in a single pass over the url
+            StringBuilder result = new StringBuilder(end + 1 + query.length());
+            result.append(url, 0, queryStart);
+            char sep = '?';
+            int start = queryStart + 1;
+            while (start < end) {
+                int next = url.indexOf('&', start);
+                if (next == -1) {
+                    next = end;
+                }
+                if (next > start && !decorates(url, start, next)) {
+                    result.append(sep).append(url, start, next);
+                    sep = '&';
+                }
+                start = next + 1;
+            }
+            return result.append(sep).append(query).toString();
+        }
+
+        /**
+         * Checks if any of the query parameters in the supplied region of the URL is one we are decorating with.
+         *
+         * @param url the URL.
+         * @param start the start of the region (inclusive).
+         * @param end the end of the region (exclusive).
+         * @return {@code true} if the region has a parameter that would be replaced.
+         */
+        private boolean decorates(String url, int start, int end) {
+            while (start < end) {
+                int next = url.indexOf('&', start);
+                if (next == -1 || next > end) {
+                    next = end;
+                }
+                int index = url.indexOf('=', start);
+                int keyEnd = index == -1 || index > next ? next : index;
+                if (keyEnd > start) {
+                    for (String key : keys) {
+                        if (key.length() == keyEnd - start && url.regionMatches(start, key, 0, key.length())) {
+                            return true;
+                        }
+                    }
+                }
+                start = next + 1;
+            }
+            return false;
+        }
+    }
+
 }
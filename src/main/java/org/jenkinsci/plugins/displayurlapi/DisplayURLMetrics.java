@@ -0,0 +1,350 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.PluginWrapper;
+import hudson.init.Initializer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.ConstructorParameters;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import jenkins.util.SystemProperties;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Counts and times URL generation, decoration, plugin attribution, provider resolution and redirects, so that
+ * administrators can see which plugins generate links and what it costs. Recording is a few {@link LongAdder}
+ * increments per operation and can be disabled with the
+ * {@code org.jenkinsci.plugins.displayurlapi.DisplayURLMetrics.enabled} system property.
+ * <p>
+ * URL generation is only broken down by the plugin generating the links when the
+ * {@code org.jenkinsci.plugins.displayurlapi.DisplayURLMetrics.byPlugin} system property is {@code true}, as that
+ * requires walking the calling stack even when no {@link DisplayURLDecorator} needs it.
+ */
+@Restricted(NoExternalUse.class)
+public final class DisplayURLMetrics implements DisplayURLMetricsMXBean {
+
+    private static final Logger LOGGER = Logger.getLogger(DisplayURLMetrics.class.getName());
+
+    static final boolean ENABLED =
+            SystemProperties.getBoolean(DisplayURLMetrics.class.getName() + ".enabled", true);
+
+    static final boolean BY_PLUGIN =
+            SystemProperties.getBoolean(DisplayURLMetrics.class.getName() + ".byPlugin", false);
+
+    /**
+     * The tag used when an operation is not broken down or could not be attributed.
+     */
+    static final String UNTAGGED = "-";
+
+    /**
+     * The upper bounds of the latency buckets: 1µs, 10µs, 100µs, 1ms, 10ms and 100ms.
+     */
+    private static final long[] BOUNDS = {1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L};
+
+    private static final String ATTRIBUTION_LOOKUP = "attribution.index.lookup";
+
+    private static final String ATTRIBUTION_MISS = "attribution.index.miss";
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, Timer>> TIMERS = new ConcurrentHashMap<>();
+
+    private static final ConcurrentMap<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    static final Counter ATTRIBUTION_LOOKUPS = counter(ATTRIBUTION_LOOKUP);
+
+    static final Counter ATTRIBUTION_MISSES = counter(ATTRIBUTION_MISS);
+
+    private static final DisplayURLMetrics INSTANCE = new DisplayURLMetrics();
+
+    private DisplayURLMetrics() {
+    }
+
+    /**
+     * Gets the metrics.
+     *
+     * @return the metrics.
+     */
+    @NonNull
+    public static DisplayURLMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets a timed operation, to be kept in a constant so that recording does not need to look it up.
+     *
+     * @param name the operation.
+     * @return the timed operation.
+     */
+    @NonNull
+    public static Metric metric(@NonNull String name) {
+        return new Metric(TIMERS.computeIfAbsent(name, k -> new ConcurrentHashMap<>()));
+    }
+
+    /**
+     * Gets a counted event, to be kept in a constant so that counting does not need to look it up.
+     *
+     * @param name the event.
+     * @return the counted event.
+     */
+    @NonNull
+    public static Counter counter(@NonNull String name) {
+        return new Counter(COUNTERS.computeIfAbsent(name, k -> new LongAdder()));
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the start time to pass to {@link Metric#record(long)}.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Records the generation of a URL by {@link DisplayURLProvider#get()}, broken down by the plugin of the context it
+     * was generated in when {@link #BY_PLUGIN} is enabled.
+     *
+     * @param metric the method generating the URL.
+     * @param context the context the URL was generated in, if any.
+     * @param start the result of {@link #start()}.
+     */
+    static void recordURL(@NonNull Metric metric, @CheckForNull DisplayURLContext context, long start) {
+        if (!BY_PLUGIN || context == null) {
+            metric.record(start);
+            return;
+        }
+        PluginWrapper plugin = context.plugin();
+        metric.record(plugin == null ? "jenkins-core" : plugin.getShortName(), start);
+    }
+
+    @Override
+    public List<TimerInfo> getTimers() {
+        List<TimerInfo> timers = new ArrayList<>();
+        for (Map.Entry<String, ConcurrentMap<String, Timer>> metric : TIMERS.entrySet()) {
+            for (Map.Entry<String, Timer> tag : metric.getValue().entrySet()) {
+                if (tag.getValue().count.sum() == 0) {
+                    // registered but not used yet
+                    continue;
+                }
+                timers.add(tag.getValue().info(metric.getKey(), tag.getKey()));
+            }
+        }
+        timers.sort(Comparator.comparing(TimerInfo::getMetric).thenComparing(TimerInfo::getTag));
+        return timers;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : COUNTERS.entrySet()) {
+            counters.put(counter.getKey(), counter.getValue().sum());
+        }
+        long lookups = counters.getOrDefault(ATTRIBUTION_LOOKUP, 0L);
+        long misses = counters.getOrDefault(ATTRIBUTION_MISS, 0L);
+        counters.put("attribution.index.hit", Math.max(0L, lookups - misses));
+        counters.put("runURLCache.hit", RunDisplayURLCache.stats().hitCount());
+        counters.put("runURLCache.miss", RunDisplayURLCache.stats().missCount());
+        counters.put("runURLCache.eviction", RunDisplayURLCache.stats().evictionCount());
+        return counters;
+    }
+
+    @Override
+    public long[] getBucketBoundsNanos() {
+        return BOUNDS.clone();
+    }
+
+    /**
+     * Registers the MXBean with the platform MBean server.
+     */
+    @Initializer
+    public static void register() {
+        if (!ENABLED) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.jenkinsci.plugins.displayurlapi:type=DisplayURLMetrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Could not register the display URL metrics MXBean", e);
+        }
+    }
+
+    /**
+     * A timed operation, broken down by tag.
+     */
+    public static final class Metric {
+
+        private final ConcurrentMap<String, Timer> tags;
+
+        private final Timer untagged;
+
+        private Metric(ConcurrentMap<String, Timer> tags) {
+            this.tags = tags;
+            this.untagged = tags.computeIfAbsent(UNTAGGED, k -> new Timer());
+        }
+
+        /**
+         * Records the operation without breaking it down.
+         *
+         * @param start the result of {@link #start()}.
+         */
+        public void record(long start) {
+            if (ENABLED) {
+                untagged.record(System.nanoTime() - start);
+            }
+        }
+
+        /**
+         * Records the operation.
+         *
+         * @param tag what the operation is broken down by, e.g. a plugin or provider name.
+         * @param start the result of {@link #start()}.
+         */
+        public void record(@CheckForNull String tag, long start) {
+            if (!ENABLED) {
+                return;
+            }
+            long elapsed = System.nanoTime() - start;
+            Timer timer = tag == null ? untagged : tags.get(tag);
+            if (timer == null) {
+                timer = tags.computeIfAbsent(tag, k -> new Timer());
+            }
+            timer.record(elapsed);
+        }
+    }
+
+    /**
+     * A counted event.
+     */
+    public static final class Counter {
+
+        private final LongAdder count;
+
+        private Counter(LongAdder count) {
+            this.count = count;
+        }
+
+        public void increment() {
+            if (ENABLED) {
+                count.increment();
+            }
+        }
+    }
+
+    /**
+     * The count, total, maximum and latency distribution of an operation.
+     */
+    private static final class Timer {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0L);
+
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+
+        private Timer() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            int i = 0;
+            while (i < BOUNDS.length && nanos > BOUNDS[i]) {
+                i++;
+            }
+            buckets[i].increment();
+        }
+
+        private TimerInfo info(String metric, String tag) {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return new TimerInfo(metric, tag, count.sum(), total.sum(), max.get(), counts);
+        }
+    }
+
+    /**
+     * A snapshot of a timed operation.
+     */
+    public static final class TimerInfo {
+
+        private final String metric;
+
+        private final String tag;
+
+        private final long count;
+
+        private final long totalNanos;
+
+        private final long maxNanos;
+
+        private final long[] buckets;
+
+        @ConstructorParameters({"metric", "tag", "count", "totalNanos", "maxNanos", "buckets"})
+        public TimerInfo(String metric, String tag, long count, long totalNanos, long maxNanos, long[] buckets) {
+            this.metric = metric;
+            this.tag = tag;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets.clone();
+        }
+
+        /**
+         * @return the operation, e.g. {@code url.getRunURL}.
+         */
+        public String getMetric() {
+            return metric;
+        }
+
+        /**
+         * @return what the operation is broken down by, e.g. the plugin, decorator or provider.
+         */
+        public String getTag() {
+            return tag;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * @return the number of operations in each latency bucket, see
+         * {@link DisplayURLMetricsMXBean#getBucketBoundsNanos()}.
+         */
+        public long[] getBuckets() {
+            return buckets.clone();
+        }
+    }
+}
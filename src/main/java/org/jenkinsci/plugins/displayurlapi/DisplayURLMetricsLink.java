@@ -0,0 +1,98 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ManagementLink;
+import hudson.security.Permission;
+import java.util.List;
+import java.util.Map;
+import jenkins.model.Jenkins;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * A read-only page showing the {@link DisplayURLMetrics}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class DisplayURLMetricsLink extends ManagementLink {
+
+    @Override
+    public String getIconFileName() {
+        return DisplayURLMetrics.ENABLED ? "symbol-analytics" : null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return Messages.metrics_displayName();
+    }
+
+    @Override
+    public String getDescription() {
+        return Messages.metrics_description();
+    }
+
+    @Override
+    public String getUrlName() {
+        return "display-url-metrics";
+    }
+
+    @NonNull
+    @Override
+    public Category getCategory() {
+        return Category.STATUS;
+    }
+
+    @NonNull
+    @Override
+    public Permission getRequiredPermission() {
+        return Jenkins.SYSTEM_READ;
+    }
+
+    /**
+     * @return whether URL generation is broken down by the plugin generating the links.
+     */
+    public boolean isByPlugin() {
+        return DisplayURLMetrics.BY_PLUGIN;
+    }
+
+    public List<DisplayURLMetrics.TimerInfo> getTimers() {
+        return DisplayURLMetrics.get().getTimers();
+    }
+
+    public Map<String, Long> getCounters() {
+        return DisplayURLMetrics.get().getCounters();
+    }
+
+    public long[] getBucketBoundsNanos() {
+        return DisplayURLMetrics.get().getBucketBoundsNanos();
+    }
+
+    /**
+     * Converts to whole milliseconds, as divisions in Jelly expressions give floating point numbers.
+     *
+     * @param nanos the duration in nanoseconds.
+     * @return the duration in milliseconds.
+     */
+    public long millis(long nanos) {
+        return nanos / 1_000_000L;
+    }
+
+    /**
+     * Converts to whole microseconds, as divisions in Jelly expressions give floating point numbers.
+     *
+     * @param nanos the duration in nanoseconds.
+     * @return the duration in microseconds.
+     */
+    public long micros(long nanos) {
+        return nanos / 1_000L;
+    }
+
+    /**
+     * @param timer the timer.
+     * @return the mean duration of the operation in whole microseconds.
+     */
+    public long meanMicros(DisplayURLMetrics.TimerInfo timer) {
+        return timer.getCount() == 0 ? 0L : micros(timer.getTotalNanos() / timer.getCount());
+    }
+}
@@ -0,0 +1,35 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Exposes the {@link DisplayURLMetrics} over JMX as {@code org.jenkinsci.plugins.displayurlapi:type=DisplayURLMetrics}.
+ */
+@Restricted(NoExternalUse.class)
+public interface DisplayURLMetricsMXBean {
+
+    /**
+     * Gets the timed operations: URL generation per method and plugin, decoration per decorator, plugin attribution,
+     * provider resolution and redirects per provider.
+     *
+     * @return the timers, sorted by metric and tag.
+     */
+    List<DisplayURLMetrics.TimerInfo> getTimers();
+
+    /**
+     * Gets the counted events, e.g. cache hits and misses.
+     *
+     * @return the counters by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Gets the upper bounds of the latency buckets of the timers.
+     *
+     * @return the upper bounds in nanoseconds, the last bucket being unbounded.
+     */
+    long[] getBucketBoundsNanos();
+}
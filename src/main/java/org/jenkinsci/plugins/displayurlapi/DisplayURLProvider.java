@@ -1,16 +1,32 @@
 package org.jenkinsci.plugins.displayurlapi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
+import hudson.Extension;
 import hudson.ExtensionList;
 import hudson.ExtensionPoint;
 import hudson.Util;
+import hudson.XmlFile;
 import hudson.model.Job;
 import hudson.model.Run;
+import hudson.model.Saveable;
 import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import jenkins.model.Jenkins;
+import jenkins.model.JenkinsLocationConfiguration;
+import jenkins.util.SystemProperties;
 import org.jenkinsci.plugins.displayurlapi.actions.AbstractDisplayAction;
+import org.jenkinsci.plugins.displayurlapi.actions.DisplayRedirectAction;
 import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.Stapler;
 
 /**
  * Generates URLs for well known UI locations for use in notifications (e.g. mailer, HipChat, Slack,
@@ -27,6 +43,17 @@ import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
 */
 public abstract class DisplayURLProvider implements ExtensionPoint {
 
+    /**
+     * The encoded configured root URL, or {@code null} if not known yet.
+     */
+    @CheckForNull
+    private static volatile Root root;
+
+    /**
+     * Incremented whenever the configured root URL may have changed.
+     */
+    private static int rootGeneration;
+
     /**
      * Returns the {@link DisplayURLProvider} to use for generating links to be given to users.
      *
@@ -59,11 +86,46 @@ public abstract class DisplayURLProvider implements ExtensionPoint {
      */
     @NonNull
     public String getRoot() {
-        String root = Jenkins.get().getRootUrl();
-        if (root == null) {
-            root = "http://unconfigured-jenkins-location/";
+        Jenkins jenkins = Jenkins.get();
+        Root root = DisplayURLProvider.root;
+        if (root != null && root.jenkins == jenkins) {
+            if (root.isCurrent()) {
+                return root.encoded;
+            }
+            // the configuration was reloaded in place, e.g. by Reload Configuration from Disk
+            invalidateRoot();
+        }
+        int generation;
+        synchronized (DisplayURLProvider.class) {
+            generation = rootGeneration;
+        }
+        String url = jenkins.getRootUrl();
+        if (url == null) {
+            url = "http://unconfigured-jenkins-location/";
+        }
+        String encoded = Util.encode(url);
+        JenkinsLocationConfiguration location = JenkinsLocationConfiguration.get();
+        String configured = location.getUrl();
+        if (configured != null) {
+            // only cache the configured root URL, otherwise the root URL is inferred from the current request
+            synchronized (DisplayURLProvider.class) {
+                if (generation == rootGeneration) {
+                    DisplayURLProvider.root = new Root(jenkins, location, configured, encoded);
+                }
+            }
+        }
+        return encoded;
+    }
+
+    /**
+     * Discards the cached root URL, and the cached URLs of runs built from it.
+     */
+    private static void invalidateRoot() {
+        synchronized (DisplayURLProvider.class) {
+            rootGeneration++;
+            root = null;
         }
-        return Util.encode(root);
+        RunDisplayURLCache.invalidateAll();
     }
 
     /**
@@ -107,12 +169,66 @@ public abstract class DisplayURLProvider implements ExtensionPoint {
      */
     public abstract String getTestsURL(Run<?, ?> run);
 
+    /**
+     * Fully qualified URLs for all the well known pages of a Run. Prefer this over calling {@link #getRunURL(Run)},
+     * {@link #getArtifactsURL(Run)}, {@link #getChangesURL(Run)} and {@link #getTestsURL(Run)} when more than one of
+     * them is needed, as implementations can compute them together.
+     */
+    @NonNull
+    public RunDisplayURLs getRunDisplayURLs(Run<?, ?> run) {
+        return new RunDisplayURLs(getRunURL(run), getArtifactsURL(run), getChangesURL(run), getTestsURL(run));
+    }
+
+    /**
+     * Fully qualified URLs for all the well known pages of a Run, computed without loading the Run, which for old
+     * builds means reading the build record from disk. The caller is responsible for checking that the Run exists.
+     *
+     * @param job the job of the run.
+     * @param number the number of the run.
+     * @return the URLs, or {@code null} if this provider needs the Run itself, in which case callers should use
+     * {@link #getRunDisplayURLs(Run)}.
+     */
+    @CheckForNull
+    public RunDisplayURLs getRunDisplayURLs(Job<?, ?> job, int number) {
+        return null;
+    }
+
     /**
      * Fully qualified URL for a Jobs home
      */
     @NonNull
     public abstract String getJobURL(Job<?, ?> job);
 
+    /**
+     * Fully qualified URLs for many runs, equivalent to calling {@link #getRunURL(Run)} for each of them.
+     *
+     * @param runs the runs.
+     * @return the URL of each run, in iteration order.
+     */
+    @NonNull
+    public List<String> getRunURLs(@NonNull Collection<? extends Run<?, ?>> runs) {
+        List<String> urls = new ArrayList<>(runs.size());
+        for (Run<?, ?> run : runs) {
+            urls.add(getRunURL(run));
+        }
+        return urls;
+    }
+
+    /**
+     * Fully qualified URLs for many jobs, equivalent to calling {@link #getJobURL(Job)} for each of them.
+     *
+     * @param jobs the jobs.
+     * @return the URL of each job, in iteration order.
+     */
+    @NonNull
+    public List<String> getJobURLs(@NonNull Collection<? extends Job<?, ?>> jobs) {
+        List<String> urls = new ArrayList<>(jobs.size());
+        for (Job<?, ?> job : jobs) {
+            urls.add(getJobURL(job));
+        }
+        return urls;
+    }
+
     /**
      * Generates the URLs that the end user will click on, these URLs will direct to a {@link AbstractDisplayAction}
      * which is then responsible for sending the user to their actual {@link DisplayURLProvider} URL.
@@ -123,62 +239,235 @@ public abstract class DisplayURLProvider implements ExtensionPoint {
 
         static final String DISPLAY_POSTFIX = AbstractDisplayAction.URL_NAME + "/redirect";
 
+        /**
+         * Whether to generate links to the {@link DisplayRedirectAction}, which resolves the job or run by its full
+         * name, rather than to the {@link AbstractDisplayAction} of each job or run. Both kinds of links always work.
+         */
+        static final boolean DIRECT_REDIRECT =
+                SystemProperties.getBoolean(DisplayURLProvider.class.getName() + ".directRedirect");
+
+        private static final DisplayURLMetrics.Metric RUN_URL_METRIC = DisplayURLMetrics.metric("url.getRunURL");
+        private static final DisplayURLMetrics.Metric ARTIFACTS_URL_METRIC =
+                DisplayURLMetrics.metric("url.getArtifactsURL");
+        private static final DisplayURLMetrics.Metric CHANGES_URL_METRIC =
+                DisplayURLMetrics.metric("url.getChangesURL");
+        private static final DisplayURLMetrics.Metric TESTS_URL_METRIC = DisplayURLMetrics.metric("url.getTestsURL");
+        private static final DisplayURLMetrics.Metric RUN_DISPLAY_URLS_METRIC =
+                DisplayURLMetrics.metric("url.getRunDisplayURLs");
+        private static final DisplayURLMetrics.Metric RUN_URLS_METRIC = DisplayURLMetrics.metric("url.getRunURLs");
+        private static final DisplayURLMetrics.Metric JOB_URL_METRIC = DisplayURLMetrics.metric("url.getJobURL");
+        private static final DisplayURLMetrics.Metric JOB_URLS_METRIC = DisplayURLMetrics.metric("url.getJobURLs");
+
         @Override
         @NonNull
         public String getRunURL(Run<?, ?> run) {
+            long start = DisplayURLMetrics.start();
+            return decorate(run, getURLs(run).getRunURL(), RUN_URL_METRIC, start);
+        }
+
+        @Override
+        @NonNull
+        public String getArtifactsURL(Run<?, ?> run) {
+            long start = DisplayURLMetrics.start();
+            return decorate(run, getURLs(run).getArtifactsURL(), ARTIFACTS_URL_METRIC, start);
+        }
+
+        @Override
+        @NonNull
+        public String getChangesURL(Run<?, ?> run) {
+            long start = DisplayURLMetrics.start();
+            return decorate(run, getURLs(run).getChangesURL(), CHANGES_URL_METRIC, start);
+        }
+
+        @Override
+        @NonNull
+        public String getTestsURL(Run<?, ?> run) {
+            long start = DisplayURLMetrics.start();
+            return decorate(run, getURLs(run).getTestsURL(), TESTS_URL_METRIC, start);
+        }
+
+        @Override
+        @NonNull
+        public RunDisplayURLs getRunDisplayURLs(Run<?, ?> run) {
+            long start = DisplayURLMetrics.start();
+            RunDisplayURLs urls = getURLs(run);
+            if (!needsContext()) {
+                urls = DisplayURLDecorator.decorate(null, urls);
+                RUN_DISPLAY_URLS_METRIC.record(start);
+                return urls;
+            }
             try (DisplayURLContext ctx = DisplayURLContext.open()) {
                 if (ctx.run() == null) {
                     // the link might be generated from another run so we only add this to the context if unset
                     ctx.run(run);
                 }
-                return DisplayURLDecorator.decorate(ctx, super.getRunURL(run) + DISPLAY_POSTFIX);
+                urls = DisplayURLDecorator.decorate(ctx, urls);
+                DisplayURLMetrics.recordURL(RUN_DISPLAY_URLS_METRIC, ctx, start);
+                return urls;
             }
         }
 
+        @Override
         @NonNull
-        private String getPageURL(Run<?, ?> run, String page) {
+        public List<String> getRunURLs(@NonNull Collection<? extends Run<?, ?>> runs) {
+            long start = DisplayURLMetrics.start();
+            List<String> urls = new ArrayList<>(runs.size());
+            // runs of the same job share the encoded URL of the job
+            Map<Job<?, ?>, String> jobURLs = new IdentityHashMap<>();
+            if (!needsContext()) {
+                for (Run<?, ?> run : runs) {
+                    urls.add(DisplayURLDecorator.decorate(getURLs(run, jobURLs).getRunURL()));
+                }
+                RUN_URLS_METRIC.record(start);
+                return urls;
+            }
             try (DisplayURLContext ctx = DisplayURLContext.open()) {
-                if (ctx.run() == null) {
-                    // the link might be generated from another run so we only add this to the context if unset
-                    ctx.run(run);
+                // the links might be generated from another run so we only add each run to the context if unset
+                boolean inherited = ctx.run() != null;
+                for (Run<?, ?> run : runs) {
+                    if (!inherited) {
+                        ctx.run(run);
+                    }
+                    urls.add(DisplayURLDecorator.decorate(ctx, getURLs(run, jobURLs).getRunURL()));
                 }
-                return DisplayURLDecorator
-                    .decorate(ctx, super.getRunURL(run) + DISPLAY_POSTFIX + "?page=" + page);
+                DisplayURLMetrics.recordURL(RUN_URLS_METRIC, ctx, start);
             }
+            return urls;
         }
 
         @Override
         @NonNull
-        public String getArtifactsURL(Run<?, ?> run) {
-            return getPageURL(run, "artifacts");
+        public List<String> getJobURLs(@NonNull Collection<? extends Job<?, ?>> jobs) {
+            long start = DisplayURLMetrics.start();
+            List<String> urls = new ArrayList<>(jobs.size());
+            String root = getRoot();
+            if (!needsContext()) {
+                for (Job<?, ?> job : jobs) {
+                    urls.add(DisplayURLDecorator.decorate(getRedirectURL(root, job)));
+                }
+                JOB_URLS_METRIC.record(start);
+                return urls;
+            }
+            try (DisplayURLContext ctx = DisplayURLContext.open()) {
+                // the links might be generated from another job so we only add each job to the context if unset
+                boolean inherited = ctx.job() != null;
+                for (Job<?, ?> job : jobs) {
+                    if (!inherited) {
+                        ctx.job(job);
+                    }
+                    urls.add(DisplayURLDecorator.decorate(ctx, getRedirectURL(root, job)));
+                }
+                DisplayURLMetrics.recordURL(JOB_URLS_METRIC, ctx, start);
+            }
+            return urls;
         }
 
-        @Override
+        /**
+         * Checks if URLs need to be generated within a {@link DisplayURLContext}, i.e. if they are decorated depending
+         * on the context or their generation is broken down by plugin.
+         *
+         * @return {@code true} if a context is needed.
+         */
+        private static boolean needsContext() {
+            return DisplayURLMetrics.BY_PLUGIN || DisplayURLDecorator.needsContext();
+        }
+
+        /**
+         * Gets the undecorated URLs of a run, from the {@link RunDisplayURLCache} unless a page is being rendered.
+         */
         @NonNull
-        public String getChangesURL(Run<?, ?> run) {
-            return getPageURL(run, "changes");
+        private RunDisplayURLs getURLs(Run<?, ?> run) {
+            return getURLs(run, null);
         }
 
-        @Override
+        /**
+         * Gets the undecorated URLs of a run, from the {@link RunDisplayURLCache} unless a page is being rendered.
+         *
+         * @param run the run.
+         * @param jobURLs the encoded URLs of jobs already computed for other runs, or {@code null} when generating the
+         *                URLs of a single run.
+         * @return the undecorated URLs.
+         */
         @NonNull
-        public String getTestsURL(Run<?, ?> run) {
-            return getPageURL(run, "tests");
+        private RunDisplayURLs getURLs(Run<?, ?> run, @CheckForNull Map<Job<?, ?>, String> jobURLs) {
+            boolean cacheable = Stapler.getCurrentRequest2() == null;
+            // also discards the cached URLs if the root URL changed
+            String root = getRoot();
+            RunDisplayURLs urls = cacheable ? RunDisplayURLCache.get(run) : null;
+            if (urls == null) {
+                String url;
+                if (DIRECT_REDIRECT) {
+                    url = root + DisplayRedirectAction.getRelativeURL(run.getParent(), run.getNumber());
+                } else if (jobURLs == null) {
+                    url = super.getRunURL(run) + DISPLAY_POSTFIX;
+                } else {
+                    String jobURL = jobURLs.computeIfAbsent(run.getParent(), ItemURLCache::encodedUrl);
+                    url = root + ItemURLCache.encodedUrl(run, jobURL) + DISPLAY_POSTFIX;
+                }
+                urls = new RunDisplayURLs(url, url + "?page=artifacts", url + "?page=changes", url + "?page=tests");
+                if (cacheable) {
+                    RunDisplayURLCache.put(run, urls);
+                }
+            }
+            return urls;
+        }
+
+        @NonNull
+        private String decorate(Run<?, ?> run, String url, DisplayURLMetrics.Metric metric, long start) {
+            if (!needsContext()) {
+                // nothing will ever look at the context
+                url = DisplayURLDecorator.decorate(url);
+                metric.record(start);
+                return url;
+            }
+            try (DisplayURLContext ctx = DisplayURLContext.open()) {
+                if (ctx.run() == null) {
+                    // the link might be generated from another run so we only add this to the context if unset
+                    ctx.run(run);
+                }
+                url = DisplayURLDecorator.decorate(ctx, url);
+                DisplayURLMetrics.recordURL(metric, ctx, start);
+                return url;
+            }
         }
 
         @Override
         @NonNull
         public String getJobURL(Job<?, ?> job) {
+            long start = DisplayURLMetrics.start();
+            if (!needsContext()) {
+                String url = DisplayURLDecorator.decorate(getRedirectURL(getRoot(), job));
+                JOB_URL_METRIC.record(start);
+                return url;
+            }
             try (DisplayURLContext ctx = DisplayURLContext.open()) {
                 if (ctx.job() == null) {
                     // the link might be generated from another job so we only add this to the context if unset
                     ctx.job(job);
                 }
-                return DisplayURLDecorator.decorate(ctx, super.getJobURL(job) + DISPLAY_POSTFIX);
+                String url = DisplayURLDecorator.decorate(ctx, getRedirectURL(getRoot(), job));
+                DisplayURLMetrics.recordURL(JOB_URL_METRIC, ctx, start);
+                return url;
+            }
+        }
+
+        /**
+         * Gets the undecorated URL of a job.
+         *
+         * @param root the root URL.
+         * @param job the job.
+         * @return the undecorated URL.
+         */
+        @NonNull
+        private static String getRedirectURL(String root, Job<?, ?> job) {
+            if (DIRECT_REDIRECT) {
+                return root + DisplayRedirectAction.getRelativeURL(job);
             }
+            return root + ItemURLCache.encodedUrl(job) + DISPLAY_POSTFIX;
         }
     }
 
-    private static String findClass() {
+    static String findClass() {
         String clazz = System.getenv(JENKINS_DISPLAYURL_PROVIDER_ENV);
         if (clazz == null || clazz.isEmpty()) {
             clazz = System.getProperty(JENKINS_DISPLAYURL_PROVIDER_PROP);
@@ -198,27 +487,41 @@ public abstract class DisplayURLProvider implements ExtensionPoint {
      * <li>The provider extension with the highest ordinal value that is not an instance of {@link ClassicDisplayURLProvider}
      * <li>{@link ClassicDisplayURLProvider}
      * </ol>
+     * <p>The result is remembered for each user until any of the above changes.
      * @see #get
      */
     @Nullable
     public static DisplayURLProvider getPreferredProvider() {
+        return PreferredProviderCache.get();
+    }
+
+    /**
+     * Resolves the {@link #getPreferredProvider()} for the current user.
+     */
+    @Nullable
+    static DisplayURLProvider resolvePreferredProvider() {
         PreferredProviderUserProperty userProperty = getUserPreferredProviderProperty();
         if (userProperty != null && userProperty.getConfiguredProvider() != null) {
             return userProperty.getConfiguredProvider();
         }
+        return getGlobalPreferredProvider();
+    }
+
+    /**
+     * Selects the provider that should be used for users without a {@link PreferredProviderUserProperty}, i.e.
+     * {@link #getPreferredProvider()} without the first step.
+     */
+    @Nullable
+    static DisplayURLProvider getGlobalPreferredProvider() {
         DisplayURLProvider globalGuiProvider = DefaultDisplayURLProviderGlobalConfiguration.get().getConfiguredProvider();
         if (globalGuiProvider != null) {
             return globalGuiProvider;
         }
         String globalProviderClass = findClass();
         if (globalProviderClass != null && !globalProviderClass.isEmpty()) {
-            return ExtensionList.lookup(DisplayURLProvider.class).getDynamic(globalProviderClass);
+            return ProviderRegistry.get().byClassName(globalProviderClass);
         }
-        ExtensionList<DisplayURLProvider> all = DisplayURLProvider.all();
-        DisplayURLProvider displayURLProvider = all.stream()
-                .filter(p -> !(p instanceof ClassicDisplayURLProvider))
-                .findFirst().orElse(DisplayURLProvider.getDefault());
-        return displayURLProvider;
+        return ProviderRegistry.get().fallback();
     }
 
     @Nullable
@@ -227,6 +530,55 @@ public abstract class DisplayURLProvider implements ExtensionPoint {
         return (user == null) ? null : user.getProperty(PreferredProviderUserProperty.class);
     }
 
+    /**
+     * The encoded configured root URL of a Jenkins instance.
+     */
+    private static final class Root {
+
+        private final Jenkins jenkins;
+
+        private final JenkinsLocationConfiguration location;
+
+        /**
+         * The {@link JenkinsLocationConfiguration#getUrl()} the root URL was computed from.
+         */
+        private final String configured;
+
+        private final String encoded;
+
+        private Root(Jenkins jenkins, JenkinsLocationConfiguration location, String configured, String encoded) {
+            this.jenkins = jenkins;
+            this.location = location;
+            this.configured = configured;
+            this.encoded = encoded;
+        }
+
+        /**
+         * Checks if the configured root URL is still the same, as the {@link JenkinsLocationConfiguration} can be
+         * reloaded in place without being saved.
+         *
+         * @return {@code true} if the encoded root URL is current.
+         */
+        private boolean isCurrent() {
+            return configured.equals(location.getUrl());
+        }
+    }
+
+    /**
+     * Discards the cached root URL when the {@link JenkinsLocationConfiguration} is saved.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class RootURLListener extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof JenkinsLocationConfiguration) {
+                invalidateRoot();
+            }
+        }
+    }
+
     static final String JENKINS_DISPLAYURL_PROVIDER_ENV = "JENKINS_DISPLAYURL_PROVIDER";
     static final String JENKINS_DISPLAYURL_PROVIDER_PROP = "jenkins.displayurl.provider";
 }
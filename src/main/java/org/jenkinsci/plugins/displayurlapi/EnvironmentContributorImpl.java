@@ -1,33 +1,97 @@
 package org.jenkinsci.plugins.displayurlapi;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.EnvironmentContributor;
 import hudson.model.Job;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import jenkins.util.SystemProperties;
 
+/**
+ * Contributes the display URLs to the environment of builds.
+ * <p>
+ * As the environment of a build is computed many times while it runs (e.g. for each step of a Pipeline) the
+ * undecorated URLs of each run are taken from the {@link RunDisplayURLCache} and only decorated (once for all of them)
+ * when a {@link DisplayURLDecorator} is installed, as decorators may depend on their configuration or the state of the
+ * run. Set the {@code org.jenkinsci.plugins.displayurlapi.EnvironmentContributorImpl.variables} system property to a
+ * comma separated list of variable names to only contribute some of them.
+ */
 @Extension
 public class EnvironmentContributorImpl extends EnvironmentContributor {
 
+    static final String JOB_DISPLAY_URL = "JOB_DISPLAY_URL";
+    static final String RUN_DISPLAY_URL = "RUN_DISPLAY_URL";
+    static final String RUN_ARTIFACTS_DISPLAY_URL = "RUN_ARTIFACTS_DISPLAY_URL";
+    static final String RUN_CHANGES_DISPLAY_URL = "RUN_CHANGES_DISPLAY_URL";
+    static final String RUN_TESTS_DISPLAY_URL = "RUN_TESTS_DISPLAY_URL";
+
+    /**
+     * The variables to contribute, {@code null} for all of them.
+     */
+    @CheckForNull
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for tests")
+    static /* not final */ Set<String> VARIABLES = parseVariables(
+            SystemProperties.getString(EnvironmentContributorImpl.class.getName() + ".variables"));
+
     @Override
     public void buildEnvironmentFor(@NonNull Run r, @NonNull EnvVars envs, @NonNull TaskListener listener) {
+        if (!contributes(RUN_DISPLAY_URL) && !contributes(RUN_ARTIFACTS_DISPLAY_URL)
+                && !contributes(RUN_CHANGES_DISPLAY_URL) && !contributes(RUN_TESTS_DISPLAY_URL)) {
+            return;
+        }
+        Run<?, ?> run = r;
+        RunDisplayURLs urls;
         try (DisplayURLContext ctx = DisplayURLContext.open(false)) { // environment contributor "comes from" core
-            ctx.run(r);
-            DisplayURLProvider urlProvider = DisplayURLProvider.get();
-            envs.put("RUN_DISPLAY_URL", urlProvider.getRunURL(r));
-            envs.put("RUN_ARTIFACTS_DISPLAY_URL", urlProvider.getArtifactsURL(r));
-            envs.put("RUN_CHANGES_DISPLAY_URL", urlProvider.getChangesURL(r));
-            envs.put("RUN_TESTS_DISPLAY_URL", urlProvider.getTestsURL(r));
+            ctx.run(run);
+            urls = DisplayURLProvider.get().getRunDisplayURLs(run);
         }
+        put(envs, RUN_DISPLAY_URL, urls.getRunURL());
+        put(envs, RUN_ARTIFACTS_DISPLAY_URL, urls.getArtifactsURL());
+        put(envs, RUN_CHANGES_DISPLAY_URL, urls.getChangesURL());
+        put(envs, RUN_TESTS_DISPLAY_URL, urls.getTestsURL());
     }
 
     @Override
     public void buildEnvironmentFor(@NonNull Job j, @NonNull EnvVars envs, @NonNull TaskListener listener) {
+        if (!contributes(JOB_DISPLAY_URL)) {
+            return;
+        }
         try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
             ctx.job(j);
-            envs.put("JOB_DISPLAY_URL", DisplayURLProvider.get().getJobURL(j));
+            envs.put(JOB_DISPLAY_URL, DisplayURLProvider.get().getJobURL(j));
+        }
+    }
+
+    private static void put(EnvVars envs, String name, String value) {
+        if (contributes(name)) {
+            envs.put(name, value);
+        }
+    }
+
+    private static boolean contributes(String name) {
+        Set<String> variables = VARIABLES;
+        return variables == null || variables.contains(name);
+    }
+
+    @CheckForNull
+    static Set<String> parseVariables(@CheckForNull String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> variables = new HashSet<>();
+        for (String name : value.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                variables.add(name);
+            }
         }
+        return Collections.unmodifiableSet(variables);
     }
 }
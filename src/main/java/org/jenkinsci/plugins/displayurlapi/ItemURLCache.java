@@ -0,0 +1,252 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.reflect.TypeToken;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.AbstractItem;
+import hudson.model.Item;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.ItemListener;
+import java.lang.ref.WeakReference;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.Stapler;
+
+/**
+ * Caches the encoded URLs of items. The URL of an item nested in folders is built from the cached URL of its folder, so
+ * the full {@link ItemGroup} hierarchy is only walked and encoded once. When an item is renamed, moved or deleted only
+ * the URLs of that item and of the items within it are discarded.
+ * <p>
+ * The cache holds the URLs of up to 50000 items by default, which can be changed with the
+ * {@code org.jenkinsci.plugins.displayurlapi.ItemURLCache.size} system property. Items are weakly referenced, so the
+ * cache never keeps an item in memory.
+ */
+@Restricted(NoExternalUse.class)
+public final class ItemURLCache {
+
+    private static final Cache<Item, String> CACHE =
+        CacheBuilder.newBuilder()
+            .weakKeys()
+            .maximumSize(Integer.getInteger(ItemURLCache.class.getName() + ".size", 50000))
+            .build();
+
+    /**
+     * Whether the URL of items of a class is the default {@link AbstractItem#getUrl()}, i.e. the URL of the parent
+     * followed by the {@link Item#getShortUrl()} when not rendering a page.
+     */
+    private static final ClassValue<Boolean> DEFAULT_ITEM_URL = new DefaultURL(AbstractItem.class);
+
+    /**
+     * Whether the URL of runs of a class is the default {@link Run#getUrl()}, i.e. the URL of the job followed by the
+     * build number when not rendering a page.
+     */
+    private static final ClassValue<Boolean> DEFAULT_RUN_URL = new DefaultURL(Run.class);
+
+    /**
+     * Whether the runs of jobs of a class have the default {@link Run#getUrl()}, as far as can be told from the type
+     * of runs the job class declares. Jobs which do not declare a specific type of runs are assumed not to.
+     */
+    private static final ClassValue<Boolean> DEFAULT_JOB_RUN_URL = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            Class<?> runType = TypeToken.of(type).resolveType(Job.class.getTypeParameters()[1]).getRawType();
+            return runType != Run.class && Run.class.isAssignableFrom(runType) && DEFAULT_RUN_URL.get(runType);
+        }
+    };
+
+    private ItemURLCache() {
+    }
+
+    /**
+     * Gets the encoded URL of a job, relative to the root URL.
+     *
+     * @param job the job.
+     * @return the encoded URL.
+     */
+    @NonNull
+    static String encodedUrl(@NonNull Job<?, ?> job) {
+        if (Stapler.getCurrentRequest2() != null) {
+            // the URL may be relative to the page being rendered
+            return Util.encode(job.getUrl());
+        }
+        return encodedItemUrl(job);
+    }
+
+    /**
+     * Gets the encoded URL of a run, relative to the root URL.
+     *
+     * @param run the run.
+     * @return the encoded URL.
+     */
+    @NonNull
+    static String encodedUrl(@NonNull Run<?, ?> run) {
+        if (Stapler.getCurrentRequest2() != null || !DEFAULT_RUN_URL.get(run.getClass())) {
+            return Util.encode(run.getUrl());
+        }
+        return encodedItemUrl(run.getParent()) + run.getNumber() + '/';
+    }
+
+    /**
+     * Gets the encoded URL of a run, relative to the root URL, given the encoded URL of its job.
+     *
+     * @param run the run.
+     * @param encodedJobUrl the {@link #encodedUrl(Job)} of the job of the run.
+     * @return the encoded URL.
+     */
+    @NonNull
+    static String encodedUrl(@NonNull Run<?, ?> run, @NonNull String encodedJobUrl) {
+        if (!DEFAULT_RUN_URL.get(run.getClass())) {
+            return Util.encode(run.getUrl());
+        }
+        return encodedJobUrl + run.getNumber() + '/';
+    }
+
+    /**
+     * Checks if the URLs of the runs of a class of jobs are the URL of the job followed by the build number, so that
+     * they can be computed without loading the runs.
+     *
+     * @param jobClass the class of jobs.
+     * @return {@code true} if the runs have the default URL.
+     */
+    static boolean hasDefaultRunURLs(@NonNull Class<?> jobClass) {
+        return DEFAULT_JOB_RUN_URL.get(jobClass);
+    }
+
+    @NonNull
+    private static String encodedItemUrl(@NonNull Item item) {
+        String url = CACHE.getIfPresent(item);
+        if (url == null) {
+            if (DEFAULT_ITEM_URL.get(item.getClass())) {
+                ItemGroup<? extends Item> parent = item.getParent();
+                String prefix = parent instanceof Item ? encodedItemUrl((Item) parent) : Util.encode(parent.getUrl());
+                url = prefix + Util.encode(item.getShortUrl());
+            } else {
+                url = Util.encode(item.getUrl());
+            }
+            CACHE.put(item, url);
+        }
+        return url;
+    }
+
+    /**
+     * Discards the cached URLs of an item and of the items within it.
+     *
+     * @param item the item.
+     */
+    static void invalidate(@NonNull Item item) {
+        CACHE.invalidate(item);
+        if (item instanceof ItemGroup) {
+            CACHE.asMap().keySet().removeIf(cached -> isWithin(cached, item));
+        }
+    }
+
+    /**
+     * Checks if an item is nested within another.
+     *
+     * @param item the item.
+     * @param ancestor the other item.
+     * @return {@code true} if the item is a descendant of the ancestor.
+     */
+    static boolean isWithin(@NonNull Item item, @NonNull Item ancestor) {
+        ItemGroup<? extends Item> parent = item.getParent();
+        while (parent instanceof Item) {
+            if (parent == ancestor) {
+                return true;
+            }
+            parent = ((Item) parent).getParent();
+        }
+        return false;
+    }
+
+    /**
+     * Discards the cached URLs of items, and the {@link RunDisplayURLCache cached URLs} of their runs, when they are
+     * renamed, moved or deleted. Renames are also notified as location changes.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class ItemListenerImpl extends ItemListener {
+
+        /**
+         * The last item whose location changed, as the items within it are notified next and were already discarded
+         * along with their runs.
+         */
+        @CheckForNull
+        private volatile Move lastMove;
+
+        @Override
+        public void onLocationChanged(Item item, String oldFullName, String newFullName) {
+            Move lastMove = this.lastMove;
+            if (lastMove != null && lastMove.includes(item, oldFullName, newFullName)) {
+                return;
+            }
+            this.lastMove = item instanceof ItemGroup ? new Move(item, oldFullName, newFullName) : null;
+            invalidate(item);
+            RunDisplayURLCache.invalidate(item);
+        }
+
+        @Override
+        public void onDeleted(Item item) {
+            invalidate(item);
+            RunDisplayURLCache.invalidate(item);
+        }
+    }
+
+    /**
+     * An item which was renamed or moved, with everything within it.
+     */
+    private static final class Move {
+
+        private final WeakReference<Item> item;
+
+        private final String oldPrefix;
+
+        private final String newPrefix;
+
+        private Move(Item item, String oldFullName, String newFullName) {
+            this.item = new WeakReference<>(item);
+            this.oldPrefix = oldFullName + '/';
+            this.newPrefix = newFullName + '/';
+        }
+
+        /**
+         * Checks if the location change of an item is part of this move.
+         *
+         * @param item the item.
+         * @param oldFullName the previous full name of the item.
+         * @param newFullName the new full name of the item.
+         * @return {@code true} if the item was moved along.
+         */
+        private boolean includes(Item item, String oldFullName, String newFullName) {
+            Item moved = this.item.get();
+            return moved != null && oldFullName.startsWith(oldPrefix) && newFullName.startsWith(newPrefix)
+                    && isWithin(item, moved);
+        }
+    }
+
+    /**
+     * Checks if a class inherits {@code getUrl()} from a base class.
+     */
+    private static final class DefaultURL extends ClassValue<Boolean> {
+
+        private final Class<?> base;
+
+        private DefaultURL(Class<?> base) {
+            this.base = base;
+        }
+
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("getUrl").getDeclaringClass() == base;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.Saveable;
+import hudson.model.User;
+import hudson.model.listeners.SaveableListener;
+import hudson.security.ACL;
+import jakarta.servlet.http.HttpSession;
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Remembers the {@link DisplayURLProvider#getPreferredProvider()} of each user, so that resolving it does not need to
+ * load the user nor scan the providers. Only the most recently active users are remembered, see the
+ * {@code org.jenkinsci.plugins.displayurlapi.PreferredProviderCache.size} and
+ * {@code org.jenkinsci.plugins.displayurlapi.PreferredProviderCache.expireAfterAccessMinutes} system properties. The
+ * resolution is also kept as a hint in the HTTP session of the user, so that a user who was forgotten does not need to
+ * be loaded again while their session lasts.
+ * <p>
+ * A resolution is stale once the user is saved (e.g. when the {@link PreferredProviderUserProperty} changes). A
+ * resolution which does not come from the {@link PreferredProviderUserProperty} is also stale once the
+ * {@link DefaultDisplayURLProviderGlobalConfiguration} is saved, the {@link ProviderRegistry} changes or the
+ * {@link DisplayURLProvider#JENKINS_DISPLAYURL_PROVIDER_PROP} system property is changed. Resolutions of providers
+ * which are no longer installed are ignored.
+ */
+@Restricted(NoExternalUse.class)
+public final class PreferredProviderCache {
+
+    /**
+     * The key used for the anonymous user.
+     */
+    private static final String ANONYMOUS = "";
+
+    /**
+     * The session attribute holding the {@link Hint} of the user.
+     */
+    private static final String SESSION_ATTRIBUTE = PreferredProviderCache.class.getName() + ".hint";
+
+    /**
+     * The source of generations, starting from the current time so that hints from sessions restored after a restart
+     * are not mistaken for current ones.
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * The generation of users which were not saved since startup.
+     */
+    private static final long INITIAL_GENERATION = GENERATIONS.get();
+
+    /**
+     * The generation of everything but the user properties.
+     */
+    private static volatile long globalGeneration = INITIAL_GENERATION;
+
+    /**
+     * The generation of each user saved since startup.
+     */
+    private static final ConcurrentMap<String, Long> USER_GENERATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Times resolving the preferred provider, by provider.
+     */
+    private static final DisplayURLMetrics.Metric RESOLVE_METRIC = DisplayURLMetrics.metric("provider.resolve");
+
+    /**
+     * Counts the resolutions found in a session after the user was forgotten.
+     */
+    private static final DisplayURLMetrics.Counter SESSION_HINTS = DisplayURLMetrics.counter("provider.sessionHint");
+
+    /**
+     * The current resolution of the recently active users.
+     */
+    private static final Cache<String, Hint> BY_USER =
+        CacheBuilder.newBuilder()
+            .maximumSize(SystemProperties.getInteger(PreferredProviderCache.class.getName() + ".size", 1000))
+            .expireAfterAccess(SystemProperties.getInteger(
+                    PreferredProviderCache.class.getName() + ".expireAfterAccessMinutes", 30), TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * The registry the resolutions were made with.
+     */
+    @CheckForNull
+    private static volatile ProviderRegistry registry;
+
+    /**
+     * The {@link DisplayURLProvider#findClass()} the resolutions were made with.
+     */
+    @CheckForNull
+    private static volatile String providerClass;
+
+    private PreferredProviderCache() {
+    }
+
+    /**
+     * Gets the preferred provider of the current user.
+     *
+     * @return the preferred provider.
+     */
+    @CheckForNull
+    static DisplayURLProvider get() {
+        return get(null);
+    }
+
+    /**
+     * Gets the preferred provider of the current user, falling back to and updating the hint in their HTTP session if
+     * the user was forgotten.
+     *
+     * @param session the HTTP session of the current user, if any. Never created by this method.
+     * @return the preferred provider.
+     */
+    @CheckForNull
+    public static DisplayURLProvider get(@CheckForNull HttpSession session) {
+        long start = DisplayURLMetrics.start();
+        checkGlobal();
+        String key = key(Jenkins.getAuthentication2());
+        Hint hint = BY_USER.getIfPresent(key);
+        DisplayURLProvider provider = hint == null ? null : hint.provider(key);
+        if (provider != null) {
+            RESOLVE_METRIC.record(provider.getName(), start);
+            return provider;
+        }
+        Object attribute = session == null ? null : session.getAttribute(SESSION_ATTRIBUTE);
+        if (attribute instanceof Hint) {
+            provider = ((Hint) attribute).provider(key);
+            if (provider != null) {
+                BY_USER.put(key, (Hint) attribute);
+                SESSION_HINTS.increment();
+                RESOLVE_METRIC.record(provider.getName(), start);
+                return provider;
+            }
+        }
+        long userGeneration = userGeneration(key);
+        long globalGeneration = PreferredProviderCache.globalGeneration;
+        PreferredProviderUserProperty userProperty = DisplayURLProvider.getUserPreferredProviderProperty();
+        provider = userProperty == null ? null : userProperty.getConfiguredProvider();
+        boolean fromUser = provider != null;
+        if (provider == null) {
+            provider = DisplayURLProvider.getGlobalPreferredProvider();
+        }
+        if (provider == null) {
+            return null;
+        }
+        hint = new Hint(key, provider.getClass().getName(), fromUser, userGeneration, globalGeneration);
+        BY_USER.put(key, hint);
+        if (session != null) {
+            session.setAttribute(SESSION_ATTRIBUTE, hint);
+        }
+        RESOLVE_METRIC.record(provider.getName(), start);
+        return provider;
+    }
+
+    /**
+     * Checks if the providers or the system property changed since the resolutions were made.
+     */
+    private static void checkGlobal() {
+        ProviderRegistry registry = ProviderRegistry.get();
+        String providerClass = DisplayURLProvider.findClass();
+        if (PreferredProviderCache.registry == registry
+                && Objects.equals(PreferredProviderCache.providerClass, providerClass)) {
+            return;
+        }
+        synchronized (PreferredProviderCache.class) {
+            if (PreferredProviderCache.registry != registry
+                    || !Objects.equals(PreferredProviderCache.providerClass, providerClass)) {
+                PreferredProviderCache.registry = registry;
+                PreferredProviderCache.providerClass = providerClass;
+                invalidateAll();
+            }
+        }
+    }
+
+    @NonNull
+    private static String key(@NonNull Authentication authentication) {
+        return ACL.isAnonymous2(authentication) ? ANONYMOUS : User.idStrategy().keyFor(authentication.getName());
+    }
+
+    private static long userGeneration(@NonNull String key) {
+        return USER_GENERATIONS.getOrDefault(key, INITIAL_GENERATION);
+    }
+
+    /**
+     * Forgets the preferred provider of all users, unless it comes from their {@link PreferredProviderUserProperty}.
+     */
+    static void invalidateAll() {
+        globalGeneration = GENERATIONS.incrementAndGet();
+        BY_USER.asMap().values().removeIf(hint -> !hint.fromUser);
+    }
+
+    /**
+     * Forgets the preferred provider of a user.
+     *
+     * @param user the user.
+     */
+    static void invalidate(@NonNull User user) {
+        String key = User.idStrategy().keyFor(user.getId());
+        USER_GENERATIONS.put(key, GENERATIONS.incrementAndGet());
+        BY_USER.invalidate(key);
+    }
+
+    /**
+     * Forgets all users without invalidating their resolutions, as if they had not been active for a while.
+     */
+    static void forgetAll() {
+        BY_USER.invalidateAll();
+    }
+
+    /**
+     * The resolved preferred provider of a user, together with what it was resolved from.
+     */
+    private static final class Hint implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String user;
+
+        private final String providerClass;
+
+        /**
+         * Whether the provider comes from the {@link PreferredProviderUserProperty} of the user.
+         */
+        private final boolean fromUser;
+
+        private final long userGeneration;
+
+        private final long globalGeneration;
+
+        private Hint(String user, String providerClass, boolean fromUser, long userGeneration, long globalGeneration) {
+            this.user = user;
+            this.providerClass = providerClass;
+            this.fromUser = fromUser;
+            this.userGeneration = userGeneration;
+            this.globalGeneration = globalGeneration;
+        }
+
+        /**
+         * Gets the provider if this hint is still current.
+         *
+         * @param key the key of the current user.
+         * @return the provider or {@code null} if the provider needs to be resolved again.
+         */
+        @CheckForNull
+        private DisplayURLProvider provider(String key) {
+            if (!user.equals(key) || userGeneration != userGeneration(user)
+                    || !fromUser && globalGeneration != PreferredProviderCache.globalGeneration) {
+                return null;
+            }
+            return ProviderRegistry.get().byClassName(providerClass);
+        }
+    }
+
+    /**
+     * Forgets preferred providers when users or the global configuration are saved.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class SaveableListenerImpl extends SaveableListener {
+
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof User) {
+                invalidate((User) o);
+            } else if (o instanceof DefaultDisplayURLProviderGlobalConfiguration) {
+                invalidateAll();
+            }
+        }
+    }
+}
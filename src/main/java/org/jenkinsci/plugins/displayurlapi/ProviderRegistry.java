@@ -0,0 +1,156 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.ExtensionListListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty.ProviderOption;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * An immutable index of the installed {@link DisplayURLProvider} extensions, by {@link DisplayURLProvider#getName()}
+ * and by class name, so that looking up a provider does not need to scan the extension list. A new registry is built
+ * whenever the extension list changes.
+ */
+@Restricted(NoExternalUse.class)
+public final class ProviderRegistry {
+
+    /**
+     * The current registry, or {@code null} when it needs to be (re)built.
+     */
+    @CheckForNull
+    private static volatile ProviderRegistry registry;
+
+    /**
+     * The extension list we are listening to for changes.
+     */
+    @CheckForNull
+    private static ExtensionList<DisplayURLProvider> listening;
+
+    private final ExtensionList<DisplayURLProvider> source;
+
+    private final Map<String, DisplayURLProvider> byName = new HashMap<>();
+
+    private final Map<String, DisplayURLProvider> byClassName = new HashMap<>();
+
+    /**
+     * The {@link ProviderOption#DEFAULT_OPTION} followed by an option for each provider.
+     */
+    private final List<ProviderOption> options;
+
+    /**
+     * The first provider which is not the {@link ClassicDisplayURLProvider}, or the latter if there is no other.
+     */
+    @CheckForNull
+    private final DisplayURLProvider fallback;
+
+    private ProviderRegistry(ExtensionList<DisplayURLProvider> source) {
+        this.source = source;
+        List<ProviderOption> options = new ArrayList<>();
+        options.add(ProviderOption.DEFAULT_OPTION);
+        DisplayURLProvider classic = null;
+        DisplayURLProvider fallback = null;
+        for (DisplayURLProvider provider : source) {
+            if (provider == null) {
+                continue;
+            }
+            // first one wins, as when scanning the extension list
+            byName.putIfAbsent(provider.getName(), provider);
+            byClassName.putIfAbsent(provider.getClass().getName(), provider);
+            options.add(new ProviderOption(provider.getClass().getName(), provider.getDisplayName()));
+            if (provider instanceof ClassicDisplayURLProvider) {
+                if (classic == null) {
+                    classic = provider;
+                }
+            } else if (fallback == null) {
+                fallback = provider;
+            }
+        }
+        this.options = Collections.unmodifiableList(options);
+        this.fallback = fallback == null ? classic : fallback;
+    }
+
+    /**
+     * Gets the registry of the current providers.
+     *
+     * @return the registry.
+     */
+    @NonNull
+    public static ProviderRegistry get() {
+        ExtensionList<DisplayURLProvider> extensionList = DisplayURLProvider.all();
+        ProviderRegistry registry = ProviderRegistry.registry;
+        if (registry != null && registry.source == extensionList) {
+            return registry;
+        }
+        synchronized (ProviderRegistry.class) {
+            if (listening != extensionList) {
+                extensionList.addListener(new ExtensionListListener() {
+                    @Override
+                    public void onChange() {
+                        invalidate();
+                    }
+                });
+                listening = extensionList;
+            }
+            registry = new ProviderRegistry(extensionList);
+            ProviderRegistry.registry = registry;
+            return registry;
+        }
+    }
+
+    /**
+     * Discards the current registry.
+     */
+    private static synchronized void invalidate() {
+        registry = null;
+    }
+
+    /**
+     * Looks up a provider by its {@link DisplayURLProvider#getName()}.
+     *
+     * @param name the name.
+     * @return the provider or {@code null} if there is no such provider.
+     */
+    @CheckForNull
+    public DisplayURLProvider byName(@CheckForNull String name) {
+        return name == null ? null : byName.get(name);
+    }
+
+    /**
+     * Looks up a provider by the name of its class.
+     *
+     * @param className the class name.
+     * @return the provider or {@code null} if there is no such provider.
+     */
+    @CheckForNull
+    public DisplayURLProvider byClassName(@CheckForNull String className) {
+        return className == null ? null : byClassName.get(className);
+    }
+
+    /**
+     * Gets the options to choose a provider from.
+     *
+     * @return the {@link ProviderOption#DEFAULT_OPTION} followed by an option for each provider.
+     */
+    @NonNull
+    public List<ProviderOption> options() {
+        return options;
+    }
+
+    /**
+     * Gets the provider to use when none is configured.
+     *
+     * @return the first provider which is not the {@link ClassicDisplayURLProvider}, or the latter if there is no
+     * other.
+     */
+    @CheckForNull
+    DisplayURLProvider fallback() {
+        return fallback;
+    }
+}
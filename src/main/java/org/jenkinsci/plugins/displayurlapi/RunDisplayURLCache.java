@@ -0,0 +1,95 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Item;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+
+/**
+ * Caches the (undecorated) URLs generated by {@link DisplayURLProvider#get()} for each run, as a completed run is
+ * typically linked to by several notifiers, the environment and the REST API. Runs are weakly referenced and the URLs
+ * softly, so the cache never keeps a run in memory and gives way under memory pressure.
+ */
+@Restricted(NoExternalUse.class)
+public final class RunDisplayURLCache {
+
+    private static final Cache<Run<?, ?>, RunDisplayURLs> CACHE =
+        CacheBuilder.newBuilder()
+            .weakKeys()
+            .softValues()
+            .maximumSize(Integer.getInteger(RunDisplayURLCache.class.getName() + ".size", 1000))
+            .recordStats()
+            .build();
+
+    private RunDisplayURLCache() {
+    }
+
+    @CheckForNull
+    static RunDisplayURLs get(@NonNull Run<?, ?> run) {
+        return CACHE.getIfPresent(run);
+    }
+
+    static void put(@NonNull Run<?, ?> run, @NonNull RunDisplayURLs urls) {
+        CACHE.put(run, urls);
+    }
+
+    /**
+     * Discards all cached URLs.
+     */
+    static void invalidateAll() {
+        CACHE.invalidateAll();
+    }
+
+    /**
+     * Discards the cached URLs of the runs of a job, or of all the jobs within a folder. Called by the
+     * {@link ItemURLCache.ItemListenerImpl} when items are renamed, moved or deleted.
+     *
+     * @param item the job or folder.
+     */
+    static void invalidate(@NonNull Item item) {
+        CACHE.asMap().keySet().removeIf(run -> {
+            Job<?, ?> job = run.getParent();
+            return job == item || ItemURLCache.isWithin(job, item);
+        });
+    }
+
+    /**
+     * Gets the statistics of the cache.
+     *
+     * @return the statistics of the cache.
+     */
+    @NonNull
+    public static CacheStats stats() {
+        return CACHE.stats();
+    }
+
+    /**
+     * Gets the ratio of lookups that found the URLs of the run in the cache.
+     *
+     * @return the hit rate, {@code 1.0} if there were no lookups.
+     */
+    public static double getHitRate() {
+        return CACHE.stats().hitRate();
+    }
+
+    /**
+     * Discards the cached URLs of deleted runs.
+     */
+    @Extension
+    @Restricted(NoExternalUse.class)
+    public static class RunListenerImpl extends RunListener<Run<?, ?>> {
+
+        @Override
+        public void onDeleted(Run<?, ?> run) {
+            CACHE.invalidate(run);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Run;
+
+/**
+ * The URLs of the well known pages of a run, as generated by {@link DisplayURLProvider#getRunDisplayURLs(Run)}.
+ */
+public final class RunDisplayURLs {
+
+    @NonNull
+    private final String runURL;
+
+    @NonNull
+    private final String artifactsURL;
+
+    @NonNull
+    private final String changesURL;
+
+    @NonNull
+    private final String testsURL;
+
+    public RunDisplayURLs(@NonNull String runURL, @NonNull String artifactsURL, @NonNull String changesURL,
+                   @NonNull String testsURL) {
+        this.runURL = runURL;
+        this.artifactsURL = artifactsURL;
+        this.changesURL = changesURL;
+        this.testsURL = testsURL;
+    }
+
+    /**
+     * @see DisplayURLProvider#getRunURL(Run)
+     */
+    @NonNull
+    public String getRunURL() {
+        return runURL;
+    }
+
+    /**
+     * @see DisplayURLProvider#getArtifactsURL(Run)
+     */
+    @NonNull
+    public String getArtifactsURL() {
+        return artifactsURL;
+    }
+
+    /**
+     * @see DisplayURLProvider#getChangesURL(Run)
+     */
+    @NonNull
+    public String getChangesURL() {
+        return changesURL;
+    }
+
+    /**
+     * @see DisplayURLProvider#getTestsURL(Run)
+     */
+    @NonNull
+    public String getTestsURL() {
+        return testsURL;
+    }
+}
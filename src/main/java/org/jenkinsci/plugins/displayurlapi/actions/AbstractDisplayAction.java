@@ -1,19 +1,69 @@
 package org.jenkinsci.plugins.displayurlapi.actions;
 
-import hudson.ExtensionList;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.Action;
-import java.util.Objects;
+import hudson.security.ACL;
+import jenkins.model.Jenkins;
+import jenkins.util.SystemProperties;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLMetrics;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.PreferredProviderCache;
+import org.jenkinsci.plugins.displayurlapi.ProviderRegistry;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 import org.kohsuke.stapler.StaplerResponse2;
 
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import org.springframework.security.core.Authentication;
 
 public abstract class AbstractDisplayAction implements Action {
 
     public static final String URL_NAME = "display";
 
+    /**
+     * The request attribute remembering the preferred provider, so that it is only resolved once per request no
+     * matter how many actions are rendered or exported.
+     */
+    private static final String PROVIDER_ATTRIBUTE = AbstractDisplayAction.class.getName() + ".provider";
+
+    /**
+     * Times redirects, by provider.
+     */
+    private static final DisplayURLMetrics.Metric REDIRECT_METRIC = DisplayURLMetrics.metric("redirect");
+
+    /**
+     * Whether the transient actions are created once per run or job rather than every time the actions are listed.
+     * This is safe as the actions only weakly reference their run or job and do not remember anything beyond the
+     * current request.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* not final */ boolean CACHE_ACTIONS =
+            SystemProperties.getBoolean(AbstractDisplayAction.class.getName() + ".cacheActions", true);
+
+    /**
+     * The HTTP status code of redirects, one of 302, 303 or 307. Permanent redirects are not supported as browsers
+     * cache them indefinitely, whereas the target depends on the preference of the user and the configuration.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* not final */ int REDIRECT_STATUS =
+            SystemProperties.getInteger(AbstractDisplayAction.class.getName() + ".redirectStatus",
+                    HttpServletResponse.SC_MOVED_TEMPORARILY);
+
+    /**
+     * How many seconds browsers may reuse redirects which do not depend on the preference of the user, {@code 0} to
+     * not allow reuse. Other redirects are always sent with {@code Cache-Control: private, no-cache}.
+     */
+    @Restricted(NoExternalUse.class)
+    @SuppressFBWarnings(value = "MS_SHOULD_BE_FINAL", justification = "for script console")
+    public static /* not final */ int REDIRECT_MAX_AGE =
+            SystemProperties.getInteger(AbstractDisplayAction.class.getName() + ".redirectMaxAge", 0);
+
     @Override
     public String getIconFileName() {
         return null;
@@ -30,33 +80,88 @@ public abstract class AbstractDisplayAction implements Action {
     }
 
     public final Object doRedirect(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
-        DisplayURLProvider provider = lookupProvider(req);
-        rsp.sendRedirect(HttpServletResponse.SC_MOVED_TEMPORARILY, getRedirectURL(provider));
+        long start = DisplayURLMetrics.start();
+        boolean anonymous = ACL.isAnonymous2(Jenkins.getAuthentication2());
+        DisplayURLProvider provider = lookupRequestedProvider(req);
+        boolean userIndependent = provider != null;
+        if (provider == null) {
+            provider = lookupProvider();
+            // anonymous users have no preference
+            userIndependent = anonymous;
+        }
+        String url = getRedirectURL(provider);
+        if (userIndependent && REDIRECT_MAX_AGE > 0) {
+            // private as the user may not be allowed to see the target
+            rsp.setHeader("Cache-Control", "private, max-age=" + REDIRECT_MAX_AGE);
+            if (anonymous) {
+                // but the browser could be logged in by the next request
+                rsp.setHeader("Vary", "Cookie, Authorization");
+            }
+        } else {
+            // the target may change with the preference of the user, the configuration or logging in
+            rsp.setHeader("Cache-Control", "private, no-cache");
+        }
+        REDIRECT_METRIC.record(provider.getName(), start);
+        rsp.sendRedirect(redirectStatus(), url);
         return null;
     }
 
+    private static int redirectStatus() {
+        switch (REDIRECT_STATUS) {
+            case HttpServletResponse.SC_SEE_OTHER:
+            case HttpServletResponse.SC_TEMPORARY_REDIRECT:
+                return REDIRECT_STATUS;
+            default:
+                return HttpServletResponse.SC_MOVED_TEMPORARILY;
+        }
+    }
+
     protected abstract String getRedirectURL(DisplayURLProvider provider);
 
-    DisplayURLProvider lookupProvider(StaplerRequest2 req) {
+    /**
+     * Looks up the provider explicitly requested with the {@code provider} query parameter.
+     *
+     * @param req the request.
+     * @return the provider or {@code null} if none or an unknown one was requested.
+     */
+    @CheckForNull
+    DisplayURLProvider lookupRequestedProvider(StaplerRequest2 req) {
         final String providerName = req.getParameter("provider");
         if (providerName != null && !providerName.isEmpty()) {
-            ExtensionList<DisplayURLProvider> providers = DisplayURLProvider.all();
-            DisplayURLProvider provider = providers.stream()
-                .filter(Objects::nonNull)
-                .filter(displayURLProvider -> providerName.equals(displayURLProvider.getName()))
-                .findFirst()
-                .orElse(null);
-
-            if (provider != null) {
-                return provider;
-            }
+            return ProviderRegistry.get().byName(providerName);
         }
-
-        return lookupProvider();
+        return null;
     }
 
     DisplayURLProvider lookupProvider() {
-        return DisplayURLProvider.getPreferredProvider();
+        StaplerRequest2 req = Stapler.getCurrentRequest2();
+        if (req == null) {
+            return DisplayURLProvider.getPreferredProvider();
+        }
+        Authentication authentication = Jenkins.getAuthentication2();
+        Object attribute = req.getAttribute(PROVIDER_ATTRIBUTE);
+        if (attribute instanceof ResolvedProvider && ((ResolvedProvider) attribute).authentication == authentication) {
+            return ((ResolvedProvider) attribute).provider;
+        }
+        // use the hint from the session of the user if they have one, so that we do not need to load the user
+        DisplayURLProvider provider = PreferredProviderCache.get(req.getSession(false));
+        req.setAttribute(PROVIDER_ATTRIBUTE, new ResolvedProvider(authentication, provider));
+        return provider;
+    }
+
+    /**
+     * The preferred provider of the user a request is processed as.
+     */
+    private static final class ResolvedProvider {
+
+        private final Authentication authentication;
+
+        private final DisplayURLProvider provider;
+
+        private ResolvedProvider(Authentication authentication, DisplayURLProvider provider) {
+            this.authentication = authentication;
+            this.provider = provider;
+        }
     }
 
 }
@@ -0,0 +1,167 @@
+package org.jenkinsci.plugins.displayurlapi.actions;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.Util;
+import hudson.model.Job;
+import hudson.model.RootAction;
+import hudson.model.Run;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import jenkins.model.Jenkins;
+import jenkins.model.lazy.LazyBuildMixIn;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.RunDisplayURLs;
+import org.kohsuke.accmod.Restricted;
+import org.kohsuke.accmod.restrictions.NoExternalUse;
+import org.kohsuke.stapler.HttpResponses;
+import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest2;
+import org.kohsuke.stapler.StaplerResponse2;
+
+/**
+ * Redirects {@code /display-redirect/<full job name>} and {@code /display-redirect/<full job name>/<build number>}
+ * exactly as the {@link JobDisplayAction} and {@link RunDisplayAction} of the job or run would, without Stapler having
+ * to traverse each folder and list the actions of the job or run to get there. Runs are not loaded when the selected
+ * provider supports {@link DisplayURLProvider#getRunDisplayURLs(Job, int)}.
+ */
+@Extension
+@Restricted(NoExternalUse.class)
+public class DisplayRedirectAction implements RootAction {
+
+    public static final String URL_NAME = "display-redirect";
+
+    @Override
+    public String getIconFileName() {
+        return null;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return null;
+    }
+
+    @Override
+    public String getUrlName() {
+        return URL_NAME;
+    }
+
+    /**
+     * Gets the URL redirecting to a job, relative to the root URL.
+     *
+     * @param job the job.
+     * @return the encoded URL.
+     */
+    @NonNull
+    public static String getRelativeURL(@NonNull Job<?, ?> job) {
+        return URL_NAME + '/' + Util.encode(job.getFullName());
+    }
+
+    /**
+     * Gets the URL redirecting to a run, relative to the root URL.
+     *
+     * @param job the job of the run.
+     * @param number the number of the run.
+     * @return the encoded URL.
+     */
+    @NonNull
+    public static String getRelativeURL(@NonNull Job<?, ?> job, int number) {
+        return getRelativeURL(job) + '/' + number;
+    }
+
+    public void doDynamic(StaplerRequest2 req, StaplerResponse2 rsp) throws IOException {
+        AbstractDisplayAction action = resolve(req.getRestOfPath());
+        if (action == null) {
+            rsp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        action.doRedirect(req, rsp);
+    }
+
+    /**
+     * Resolves the display action of a job or run.
+     *
+     * @param path the full name of the job, optionally followed by {@code /} and a build number.
+     * @return the display action or {@code null} if there is no such job or run, or the current user cannot see it.
+     */
+    @CheckForNull
+    static AbstractDisplayAction resolve(@NonNull String path) {
+        path = trim(path);
+        if (path.isEmpty()) {
+            return null;
+        }
+        Jenkins jenkins = Jenkins.get();
+        // getItemByFullName checks Item.READ on the job and all its parents, as traversing the URL would
+        Job<?, ?> job = jenkins.getItemByFullName(path, Job.class);
+        if (job != null) {
+            return new JobDisplayAction(job);
+        }
+        int slash = path.lastIndexOf('/');
+        if (slash == -1) {
+            return null;
+        }
+        int number;
+        try {
+            number = Integer.parseInt(path.substring(slash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        job = jenkins.getItemByFullName(path.substring(0, slash), Job.class);
+        if (job == null) {
+            return null;
+        }
+        if (job instanceof LazyBuildMixIn.LazyLoadingJob) {
+            // check the build directory exists rather than loading the build record
+            if (!((LazyBuildMixIn.LazyLoadingJob<?, ?>) job).getLazyBuildMixIn()._getRuns().runExists(number)) {
+                return null;
+            }
+            return new BuildNumberDisplayAction(job, number);
+        }
+        Run<?, ?> run = job.getBuildByNumber(number);
+        return run == null ? null : new RunDisplayAction(run);
+    }
+
+    /**
+     * Redirects to a run that might not be loaded, only loading it if the provider needs the run.
+     */
+    private static final class BuildNumberDisplayAction extends AbstractDisplayAction {
+
+        private final Job<?, ?> job;
+
+        private final int number;
+
+        private BuildNumberDisplayAction(Job<?, ?> job, int number) {
+            this.job = job;
+            this.number = number;
+        }
+
+        @Override
+        protected String getRedirectURL(DisplayURLProvider provider) {
+            String page = Stapler.getCurrentRequest2().getParameter("page");
+            RunDisplayURLs urls = provider.getRunDisplayURLs(job, number);
+            if (urls != null) {
+                return RunDisplayAction.getRedirectURL(urls, page);
+            }
+            Run<?, ?> run = job.getBuildByNumber(number);
+            if (run == null) {
+                // deleted since we checked
+                throw HttpResponses.notFound();
+            }
+            return RunDisplayAction.getRedirectURL(provider, run, page);
+        }
+    }
+
+    @NonNull
+    private static String trim(@NonNull String path) {
+        int start = 0;
+        int end = path.length();
+        while (start < end && path.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        return path.substring(start, end);
+    }
+}
@@ -1,5 +1,7 @@
 package org.jenkinsci.plugins.displayurlapi.actions;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
@@ -8,31 +10,51 @@ import hudson.model.Job;
 import jenkins.model.TransientActionFactory;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
 
+import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
 @ExportedBean(defaultVisibility = 0)
 public class JobDisplayAction extends AbstractDisplayAction {
 
-    private final Job job;
+    /**
+     * The job, weakly referenced as the {@link TransientActionFactoryImpl} keeps the action for as long as the job
+     * exists and must not prevent it from being collected once deleted.
+     */
+    private final WeakReference<Job> job;
 
     JobDisplayAction(Job job) {
-        this.job = job;
+        this.job = new WeakReference<>(job);
+    }
+
+    private Job<?, ?> job() {
+        Job<?, ?> job = this.job.get();
+        if (job == null) {
+            throw new IllegalStateException("The job of this action has been deleted");
+        }
+        return job;
     }
 
     @Exported(visibility = 1)
     public String getDisplayUrl() {
-        return lookupProvider().getJobURL(job);
+        return lookupProvider().getJobURL(job());
     }
 
     protected String getRedirectURL(DisplayURLProvider provider) {
-        return provider.getJobURL(job);
+        return provider.getJobURL(job());
     }
 
     @Extension
     public static class TransientActionFactoryImpl extends TransientActionFactory {
 
+        private static final Cache<Job<?, ?>, List<JobDisplayAction>> ACTIONS =
+            CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
+
         @Override
         public Class type() {
             return Job.class;
@@ -41,7 +63,11 @@ public class JobDisplayAction extends AbstractDisplayAction {
         @NonNull
         @Override
         public Collection<? extends Action> createFor(@NonNull Object target) {
-            return ImmutableList.of(new JobDisplayAction((Job) target));
+            if (!CACHE_ACTIONS) {
+                return ImmutableList.of(new JobDisplayAction((Job) target));
+            }
+            Job<?, ?> job = (Job<?, ?>) target;
+            return ACTIONS.asMap().computeIfAbsent(job, j -> Collections.singletonList(new JobDisplayAction(j)));
         }
     }
 }
@@ -1,52 +1,104 @@
 package org.jenkinsci.plugins.displayurlapi.actions;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.Extension;
 import hudson.model.Action;
 import hudson.model.Run;
 import jenkins.model.TransientActionFactory;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.RunDisplayURLs;
 import org.kohsuke.stapler.Stapler;
 import org.kohsuke.stapler.StaplerRequest2;
 
+import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 
 @ExportedBean(defaultVisibility = 0)
 public class RunDisplayAction extends AbstractDisplayAction {
 
-    private final Run run;
+    /**
+     * The run, weakly referenced as the {@link TransientActionFactoryImpl} keeps the action for as long as the run is
+     * loaded and must not prevent it from being unloaded.
+     */
+    private final WeakReference<Run> run;
+
+    /**
+     * The URLs computed for the current request, so that exporting all the URLs only computes them once.
+     */
+    @CheckForNull
+    private transient volatile Bundle bundle;
 
     protected RunDisplayAction(Run run) {
-        this.run = run;
+        this.run = new WeakReference<>(run);
+    }
+
+    private Run<?, ?> run() {
+        Run<?, ?> run = this.run.get();
+        if (run == null) {
+            throw new IllegalStateException("The run of this action has been unloaded");
+        }
+        return run;
     }
 
     @Exported(visibility = 1)
     public String getArtifactsUrl() {
-        return lookupProvider().getArtifactsURL(run);
+        return getURLs().getArtifactsURL();
     }
 
     @Exported(visibility = 1)
     public String getChangesUrl() {
-        return lookupProvider().getChangesURL(run);
+        return getURLs().getChangesURL();
     }
 
     @Exported(visibility = 1)
     public String getTestsUrl() {
-        return lookupProvider().getTestsURL(run);
+        return getURLs().getTestsURL();
     }
 
     @Exported(visibility = 1)
     public String getDisplayUrl() {
-        return lookupProvider().getRunURL(run);
+        return getURLs().getRunURL();
+    }
+
+    private RunDisplayURLs getURLs() {
+        StaplerRequest2 req = Stapler.getCurrentRequest2();
+        if (req == null) {
+            // the URLs may differ the next time we are asked, e.g. if the preferred provider changes
+            return lookupProvider().getRunDisplayURLs(run());
+        }
+        DisplayURLProvider provider = lookupProvider();
+        Bundle bundle = this.bundle;
+        if (bundle == null || bundle.request.get() != req || bundle.provider != provider) {
+            bundle = new Bundle(req, provider, provider.getRunDisplayURLs(run()));
+            this.bundle = bundle;
+        }
+        return bundle.urls;
     }
 
     @Override
     protected String getRedirectURL(DisplayURLProvider provider) {
         StaplerRequest2 req = Stapler.getCurrentRequest2();
         String page = req.getParameter("page");
+        return getRedirectURL(provider, run(), page);
+    }
+
+    /**
+     * Gets the URL of a page of a run.
+     *
+     * @param provider the provider.
+     * @param run the run.
+     * @param page the {@code page} parameter.
+     * @return the URL to redirect to.
+     */
+    static String getRedirectURL(DisplayURLProvider provider, Run<?, ?> run, String page) {
         String url;
         if (page != null) {
             switch (page) {
@@ -69,9 +121,58 @@ public class RunDisplayAction extends AbstractDisplayAction {
         return url;
     }
 
+    /**
+     * Gets the URL of a page of a run.
+     *
+     * @param urls the URLs of the run.
+     * @param page the {@code page} parameter.
+     * @return the URL to redirect to.
+     */
+    static String getRedirectURL(RunDisplayURLs urls, String page) {
+        if (page == null) {
+            return urls.getRunURL();
+        }
+        switch (page) {
+            case "artifacts":
+                return urls.getArtifactsURL();
+            case "changes":
+                return urls.getChangesURL();
+            case "tests":
+                return urls.getTestsURL();
+            default:
+                return urls.getRunURL();
+        }
+    }
+
+    /**
+     * The URLs of the run from a provider for a request.
+     */
+    private static final class Bundle {
+
+        /**
+         * The request, weakly referenced as the action may outlive it.
+         */
+        private final WeakReference<StaplerRequest2> request;
+
+        private final DisplayURLProvider provider;
+
+        private final RunDisplayURLs urls;
+
+        private Bundle(StaplerRequest2 request, DisplayURLProvider provider, RunDisplayURLs urls) {
+            this.request = new WeakReference<>(request);
+            this.provider = provider;
+            this.urls = urls;
+        }
+    }
+
     @Extension
     public static class TransientActionFactoryImpl extends TransientActionFactory<Run> {
 
+        private static final Cache<Run<?, ?>, List<RunDisplayAction>> ACTIONS =
+            CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
+
         @Override
         public Class type() {
             return Run.class;
@@ -80,7 +181,11 @@ public class RunDisplayAction extends AbstractDisplayAction {
         @NonNull
         @Override
         public Collection<? extends Action> createFor(@NonNull Run target) {
-            return ImmutableList.of(new RunDisplayAction(target));
+            if (!CACHE_ACTIONS) {
+                return ImmutableList.of(new RunDisplayAction(target));
+            }
+            Run<?, ?> run = target;
+            return ACTIONS.asMap().computeIfAbsent(run, r -> Collections.singletonList(new RunDisplayAction(r)));
         }
     }
 }
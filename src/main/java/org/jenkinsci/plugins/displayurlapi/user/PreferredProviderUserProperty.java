@@ -1,15 +1,13 @@
 package org.jenkinsci.plugins.displayurlapi.user;
 
-import com.google.common.collect.ImmutableList;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
 import hudson.model.User;
 import hudson.model.UserProperty;
 import hudson.model.UserPropertyDescriptor;
 
-import java.util.stream.Collectors;
-
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.ProviderRegistry;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.util.List;
@@ -47,18 +45,11 @@ public class PreferredProviderUserProperty extends UserProperty {
     }
 
     public DisplayURLProvider getConfiguredProvider() {
-        return DisplayURLProvider.all().stream()
-            .filter(input -> input.getClass().getName().equals(providerId))
-            .findFirst()
-            .orElse(null);
+        return ProviderRegistry.get().byClassName(providerId);
     }
 
     public static List<ProviderOption> getAll() {
-        List<ProviderOption> options = DisplayURLProvider.all().stream()
-            .map(input -> new ProviderOption(input.getClass().getName(), input.getDisplayName()))
-            .collect(Collectors.toList());
-        return ImmutableList.<ProviderOption>builder()
-            .add(ProviderOption.DEFAULT_OPTION).addAll(options).build();
+        return ProviderRegistry.get().options();
     }
 
     public boolean isSelected(String providerId) {
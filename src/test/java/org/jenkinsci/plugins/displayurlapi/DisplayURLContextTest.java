@@ -0,0 +1,221 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.PluginWrapper;
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class DisplayURLContextTest {
+
+    @Rule
+    public JenkinsRule rule = new JenkinsRule();
+
+    @Test
+    public void pluginIsInheritedUnlessOverridden() {
+        PluginWrapper ours = Jenkins.get().getPluginManager().getPlugin("display-url-api");
+        try (DisplayURLContext outer = DisplayURLContext.open()) {
+            outer.plugin(ours);
+            try (DisplayURLContext inner = DisplayURLContext.open()) {
+                assertSame(ours, inner.plugin());
+                inner.plugin(null);
+                assertSame(ours, inner.plugin());
+            }
+            assertSame(ours, outer.plugin());
+        }
+        try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+            assertNull(ctx.plugin());
+        }
+    }
+
+    @Test
+    public void guessStopsAtTheFirstPlugin() {
+        PluginWrapper ours = Jenkins.get().getPluginManager().getPlugin("display-url-api");
+        List<Class<?>> looked = new ArrayList<>();
+        PluginWrapper plugin = DisplayURLContext.firstPlugin(
+                Stream.of(DisplayURLContext.class, String.class, Integer.class, Long.class, Short.class),
+                clazz -> {
+                    looked.add(clazz);
+                    return clazz == Integer.class ? ours : null;
+                });
+        assertSame(ours, plugin);
+        // our own frames are skipped and nothing beyond the first plugin is looked at
+        assertEquals(Arrays.asList(String.class, Integer.class), looked);
+    }
+
+    @Test
+    public void guessSkipsTheFramesGeneratingTheURL() {
+        PluginWrapper ours = Jenkins.get().getPluginManager().getPlugin("display-url-api");
+        PluginWrapper decorating = mock(PluginWrapper.class);
+        List<Class<?>> looked = new ArrayList<>();
+        PluginWrapper plugin = DisplayURLContext.firstPlugin(
+                Stream.of(DisplayURLContext.class, Long.class, DisplayURLDecorator.class,
+                        DisplayURLProvider.DisplayURLProviderImpl.class, String.class, Integer.class, Short.class),
+                clazz -> {
+                    looked.add(clazz);
+                    return clazz == Long.class ? decorating : clazz == Integer.class ? ours : null;
+                });
+        // the decorator asking for the plugin is not the plugin asking for the URL
+        assertSame(ours, plugin);
+        assertEquals(Arrays.asList(Long.class, String.class, Integer.class), looked);
+    }
+
+    @Test
+    public void noGuessWithoutDecorators() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        long before = guesses();
+        DisplayURLProvider.get().getRunURL(b);
+        DisplayURLProvider.get().getJobURL(p);
+        assertEquals(before, guesses());
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            assertEquals(before, guesses());
+            try (DisplayURLContext inner = DisplayURLContext.open()) {
+                inner.plugin();
+                assertEquals(before + 1, guesses());
+            }
+            // resolved once for all the nested contexts
+            ctx.plugin();
+            assertEquals(before + 1, guesses());
+        }
+    }
+
+    @Test
+    public void noGuessUnlessAskedFor() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        long before = guesses();
+        assertTrue(DisplayURLProvider.get().getRunURL(b).endsWith("?medium=test"));
+        DisplayURLProvider.get().getJobURL(p);
+        assertEquals(before, guesses());
+        PluginDecorator.asked = true;
+        try {
+            DisplayURLProvider.get().getRunURL(b);
+            assertEquals(before + 1, guesses());
+        } finally {
+            PluginDecorator.asked = false;
+        }
+    }
+
+    @TestExtension("noGuessUnlessAskedFor")
+    public static class PluginDecorator extends DisplayURLDecorator {
+
+        static volatile boolean asked;
+
+        @NonNull
+        @Override
+        protected Map<String, String> parameters(@NonNull DisplayURLContext context) {
+            if (asked) {
+                context.plugin();
+            }
+            return Collections.singletonMap("medium", "test");
+        }
+    }
+
+    private static long guesses() {
+        long count = 0;
+        for (DisplayURLMetrics.TimerInfo timer : DisplayURLMetrics.get().getTimers()) {
+            if (timer.getMetric().equals("attribution.guess")) {
+                count += timer.getCount();
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void runIsInheritedByNestedContexts() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        try (DisplayURLContext outer = DisplayURLContext.open(false)) {
+            outer.run(b).attribute("medium", "email");
+            try (DisplayURLContext inner = DisplayURLContext.open()) {
+                assertSame(b, inner.run());
+                assertSame(p, inner.job());
+                assertSame(p, inner.task());
+                assertSame(b, inner.executable());
+                inner.attribute("medium", null);
+                assertNull(inner.attribute("medium"));
+            }
+            assertEquals("email", outer.attribute("medium"));
+        }
+        try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+            assertNull(ctx.run());
+            assertNull(ctx.attribute("medium"));
+        }
+    }
+
+    @Test
+    public void nestedContextIsRecycledOnceClosed() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        DisplayURLContext nested;
+        try (DisplayURLContext outer = DisplayURLContext.open(false)) {
+            outer.run(b).attribute("medium", "email");
+            try (DisplayURLContext inner = DisplayURLContext.open(false)) {
+                nested = inner;
+                assertSame(b, nested.run());
+            }
+        }
+        // the information is not kept once the outer context is closed
+        assertNull(nested.run());
+        assertNull(nested.job());
+        assertNull(nested.attribute("medium"));
+        // and the instance is handed out again
+        try (DisplayURLContext outer = DisplayURLContext.open(false)) {
+            try (DisplayURLContext inner = DisplayURLContext.open(false)) {
+                assertSame(nested, inner);
+                assertNull(inner.run());
+            }
+        }
+    }
+
+    @Test
+    public void snapshotCarriesContextToAnotherThread() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        PluginWrapper ours = Jenkins.get().getPluginManager().getPlugin("display-url-api");
+        DisplayURLContext.Snapshot snapshot;
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            ctx.run(b).plugin(ours).attribute("medium", "chat");
+            snapshot = DisplayURLContext.capture();
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(snapshot.wrap(() -> {
+                try (DisplayURLContext ctx = DisplayURLContext.open()) {
+                    assertSame(b, ctx.run());
+                    assertSame(p, ctx.job());
+                    assertSame(ours, ctx.plugin());
+                    assertEquals("chat", ctx.attribute("medium"));
+                }
+                return null;
+            })).get();
+            executor.submit(() -> {
+                try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+                    assertNull(ctx.run());
+                    assertNull(ctx.attribute("medium"));
+                }
+            }).get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -4,13 +4,17 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.EnvVars;
 import hudson.ExtensionList;
 import hudson.PluginWrapper;
+import hudson.model.Build;
 import hudson.model.FreeStyleProject;
+import hudson.model.ItemGroup;
 import hudson.model.Job;
+import hudson.model.Project;
 import hudson.model.Run;
 import hudson.model.User;
 import hudson.security.ACL;
 import hudson.security.ACLContext;
 import jenkins.model.Jenkins;
+import jenkins.model.JenkinsLocationConfiguration;
 import org.jenkinsci.plugins.displayurlapi.actions.RunDisplayAction;
 import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
 import org.junit.Rule;
@@ -19,10 +23,19 @@ import org.jvnet.hudson.test.FlagRule;
 import org.jvnet.hudson.test.MockFolder;
 import org.jvnet.hudson.test.TestExtension;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class DisplayURLProviderTest {
 
@@ -105,7 +118,8 @@ public class DisplayURLProviderTest {
                 b.getAction(RunDisplayAction.class).getDisplayUrl());
     }
 
-    @TestExtension(value = { "urlsWithUserDefinedProvider", "providerConfigurationPrecedence" })
+    @TestExtension(value = { "urlsWithUserDefinedProvider", "providerConfigurationPrecedence",
+            "preferredProviderFollowsConfigurationChanges" })
     public static class TestUserDisplayURLProvider extends DisplayURLProvider
     {
 
@@ -241,6 +255,27 @@ public class DisplayURLProviderTest {
         }
     }
 
+    @Test
+    public void preferredProviderFollowsConfigurationChanges() throws Exception {
+        rule.jenkins.setSecurityRealm(rule.createDummySecurityRealm());
+        User user = User.getById("user", true);
+        DefaultDisplayURLProviderGlobalConfiguration.get().setProviderId(ClassicDisplayURLProvider.class.getName());
+        try (ACLContext unused = ACL.as(user)) {
+            assertSame(ExtensionList.lookupSingleton(ClassicDisplayURLProvider.class),
+                    DisplayURLProvider.getPreferredProvider());
+            DefaultDisplayURLProviderGlobalConfiguration.get().setProviderId(TestUserDisplayURLProvider.class.getName());
+            assertSame(ExtensionList.lookupSingleton(TestUserDisplayURLProvider.class),
+                    DisplayURLProvider.getPreferredProvider());
+            user.addProperty(new PreferredProviderUserProperty(ClassicDisplayURLProvider.class.getName()));
+            assertSame(ExtensionList.lookupSingleton(ClassicDisplayURLProvider.class),
+                    DisplayURLProvider.getPreferredProvider());
+        }
+        try (ACLContext unused = ACL.as2(Jenkins.ANONYMOUS2)) {
+            assertSame(ExtensionList.lookupSingleton(TestUserDisplayURLProvider.class),
+                    DisplayURLProvider.getPreferredProvider());
+        }
+    }
+
     private void asssertExternalUrls(Job<?, ?> project, Run<?, ?> run) throws Exception {
         // No matter what configuration is being used, this plugin should always produce .../display/redirect URLs.
         // Configurations should only be applied when resolving a redirect URL.
@@ -264,7 +299,46 @@ public class DisplayURLProviderTest {
         assertEquals(DisplayURLProvider.get().getJobURL(project), environment.get("JOB_DISPLAY_URL"));
     }
 
-    @TestExtension("decoration")
+    @Test
+    public void runDisplayURLs() throws Exception {
+        MockFolder folder = rule.createFolder("my folder");
+        FreeStyleProject project = folder.createProject(FreeStyleProject.class, "my job");
+        Run<?, ?> run = project.scheduleBuild2(0).get();
+        RunDisplayURLs urls = DisplayURLProvider.get().getRunDisplayURLs(run);
+        assertEquals(DisplayURLProvider.get().getRunURL(run), urls.getRunURL());
+        assertEquals(DisplayURLProvider.get().getArtifactsURL(run), urls.getArtifactsURL());
+        assertEquals(DisplayURLProvider.get().getChangesURL(run), urls.getChangesURL());
+        assertEquals(DisplayURLProvider.get().getTestsURL(run), urls.getTestsURL());
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            ctx.plugin(Jenkins.get().getPluginManager().getPlugin("display-url-api"));
+            urls = DisplayURLProvider.get().getRunDisplayURLs(run);
+            assertEquals(DisplayURLProvider.get().getRunURL(run), urls.getRunURL());
+            assertEquals(DisplayURLProvider.get().getTestsURL(run), urls.getTestsURL());
+        }
+    }
+
+    @Test
+    public void batchURLs() throws Exception {
+        MockFolder folder = rule.createFolder("my folder");
+        FreeStyleProject project = folder.createProject(FreeStyleProject.class, "my job");
+        FreeStyleProject other = rule.createFreeStyleProject("other job");
+        Run<?, ?> run = project.scheduleBuild2(0).get();
+        Run<?, ?> run2 = project.scheduleBuild2(0).get();
+        Run<?, ?> run3 = other.scheduleBuild2(0).get();
+        assertEquals(Arrays.asList(DisplayURLProvider.get().getRunURL(run), DisplayURLProvider.get().getRunURL(run2),
+                        DisplayURLProvider.get().getRunURL(run3)),
+                DisplayURLProvider.get().getRunURLs(Arrays.asList(run, run2, run3)));
+        assertEquals(Arrays.asList(DisplayURLProvider.get().getJobURL(project), DisplayURLProvider.get().getJobURL(other)),
+                DisplayURLProvider.get().getJobURLs(Arrays.asList(project, other)));
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            // the run of an enclosing context is used for all the links
+            ctx.run(run3);
+            assertEquals(Arrays.asList(DisplayURLProvider.get().getRunURL(run), DisplayURLProvider.get().getRunURL(run2)),
+                    DisplayURLProvider.get().getRunURLs(Arrays.asList(run, run2)));
+        }
+    }
+
+    @TestExtension({"decoration", "runDisplayURLs", "batchURLs"})
     public static class DisplayURLDecoratorImpl extends DisplayURLDecorator {
         @NonNull
         @Override
@@ -284,4 +358,168 @@ public class DisplayURLProviderTest {
             return result;
         }
     }
+
+    @Test
+    public void staticDecoration() throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject("my job");
+        String root = DisplayURLProvider.get().getRoot();
+        assertEquals(root + "job/my%20job/display/redirect?utm_medium=static&utm_source=Jenkins",
+                DisplayURLProvider.get().getJobURL(project));
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            ctx.attribute("medium", "e mail");
+            assertEquals(root + "job/my%20job/display/redirect?utm_medium=e+mail&utm_source=Jenkins",
+                    DisplayURLProvider.get().getJobURL(project));
+        }
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            String decorated = DisplayURLDecorator.decorate(ctx,
+                    root + "job/my%20job/display/redirect?utm_source=Mail&page=changes&flag");
+            assertEquals(root + "job/my%20job/display/redirect?page=changes&flag&utm_medium=static&utm_source=Jenkins",
+                    decorated);
+            assertSame(decorated, DisplayURLDecorator.decorate(ctx, decorated));
+        }
+    }
+
+    @Test
+    public void staticOnlyDecoration() throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject("my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(project);
+        String root = DisplayURLProvider.get().getRoot();
+        assertFalse(DisplayURLDecorator.needsContext());
+        ConfiguredDisplayURLDecoratorImpl.source = "first";
+        DisplayURLDecorator.invalidate();
+        try {
+            assertEquals(root + "job/my%20job/display/redirect?utm_source=first",
+                    DisplayURLProvider.get().getJobURL(project));
+            assertEquals(root + "job/my%20job/1/display/redirect?page=tests&utm_source=first",
+                    DisplayURLProvider.get().getRunDisplayURLs(run).getTestsURL());
+            assertEquals(Arrays.asList(root + "job/my%20job/1/display/redirect?utm_source=first"),
+                    DisplayURLProvider.get().getRunURLs(Arrays.asList(run)));
+            // the parameters of decorators which do not depend on the context are never collected per URL
+            assertEquals(0L, timerCount("decorator.parameters", ConfiguredDisplayURLDecoratorImpl.class.getName()));
+            // the static parameters are kept until invalidated
+            ConfiguredDisplayURLDecoratorImpl.source = "second";
+            assertEquals(root + "job/my%20job/display/redirect?utm_source=first",
+                    DisplayURLProvider.get().getJobURL(project));
+            DisplayURLDecorator.invalidate();
+            assertEquals(root + "job/my%20job/display/redirect?utm_source=second",
+                    DisplayURLProvider.get().getJobURL(project));
+        } finally {
+            ConfiguredDisplayURLDecoratorImpl.source = null;
+            DisplayURLDecorator.invalidate();
+        }
+    }
+
+    @TestExtension("staticOnlyDecoration")
+    public static class ConfiguredDisplayURLDecoratorImpl extends DisplayURLDecorator {
+
+        static volatile String source;
+
+        @NonNull
+        @Override
+        protected Map<String, String> staticParameters() {
+            return source == null ? Collections.emptyMap() : Collections.singletonMap("utm_source", source);
+        }
+    }
+
+    @Test
+    public void rootFollowsLocationConfiguration() {
+        JenkinsLocationConfiguration location = JenkinsLocationConfiguration.get();
+        location.setUrl("https://jenkins.example.com/my ci/");
+        assertEquals("https://jenkins.example.com/my%20ci/", DisplayURLProvider.get().getRoot());
+        assertEquals("https://jenkins.example.com/my%20ci/", DisplayURLProvider.getDefault().getRoot());
+        location.setUrl("https://other.example.com/");
+        assertEquals("https://other.example.com/", DisplayURLProvider.get().getRoot());
+        // without a configured root URL it is inferred, and never from a request here
+        location.setUrl(null);
+        assertEquals("http://unconfigured-jenkins-location/", DisplayURLProvider.get().getRoot());
+    }
+
+    @Test
+    public void rootFollowsLocationReload() throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject("my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(project);
+        JenkinsLocationConfiguration location = JenkinsLocationConfiguration.get();
+        location.setUrl("https://jenkins.example.com/");
+        assertEquals("https://jenkins.example.com/", DisplayURLProvider.get().getRoot());
+        assertEquals("https://jenkins.example.com/job/my%20job/1/display/redirect", DisplayURLProvider.get().getRunURL(run));
+        // as Reload Configuration from Disk would, without saving
+        Path file = rule.jenkins.getRootDir().toPath().resolve(JenkinsLocationConfiguration.class.getName() + ".xml");
+        Files.writeString(file, Files.readString(file).replace("https://jenkins.example.com/", "https://other.example.com/"));
+        location.load();
+        assertEquals("https://other.example.com/", DisplayURLProvider.get().getRoot());
+        assertEquals("https://other.example.com/job/my%20job/1/display/redirect", DisplayURLProvider.get().getRunURL(run));
+    }
+
+    @Test
+    public void runURLsFromBuildNumberNeedDefaultRunURLs() throws Exception {
+        assertTrue(ItemURLCache.hasDefaultRunURLs(FreeStyleProject.class));
+        assertFalse(ItemURLCache.hasDefaultRunURLs(CustomURLProject.class));
+        FreeStyleProject project = rule.createFreeStyleProject("my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(project);
+        RunDisplayURLs urls = DisplayURLProvider.getDefault().getRunDisplayURLs(project, run.getNumber());
+        assertNotNull(urls);
+        assertEquals(DisplayURLProvider.getDefault().getRunURL(run), urls.getRunURL());
+    }
+
+    /**
+     * A job type whose runs have their own URLs, which cannot be guessed from the build number.
+     */
+    public abstract static class CustomURLProject extends Project<CustomURLProject, CustomURLBuild> {
+        protected CustomURLProject(ItemGroup parent, String name) {
+            super(parent, name);
+        }
+    }
+
+    public abstract static class CustomURLBuild extends Build<CustomURLProject, CustomURLBuild> {
+        protected CustomURLBuild(CustomURLProject project) throws IOException {
+            super(project);
+        }
+
+        @Override
+        @NonNull
+        public String getUrl() {
+            return "custom/" + getNumber() + '/';
+        }
+    }
+
+    @Test
+    public void metrics() throws Exception {
+        FreeStyleProject project = rule.createFreeStyleProject("my job");
+        long before = timerCount("url.getJobURL", DisplayURLMetrics.UNTAGGED);
+        DisplayURLProvider.get().getJobURL(project);
+        DisplayURLProvider.get().getJobURL(project);
+        assertEquals(before + 2, timerCount("url.getJobURL", DisplayURLMetrics.UNTAGGED));
+    }
+
+    private static long timerCount(String metric, String tag) {
+        for (DisplayURLMetrics.TimerInfo timer : DisplayURLMetrics.get().getTimers()) {
+            if (timer.getMetric().equals(metric) && timer.getTag().equals(tag)) {
+                return timer.getCount();
+            }
+        }
+        return 0L;
+    }
+
+    @TestExtension("staticDecoration")
+    public static class StaticDisplayURLDecoratorImpl extends DisplayURLDecorator {
+        @NonNull
+        @Override
+        protected Map<String, String> staticParameters() {
+            Map<String, String> result = new HashMap<>();
+            result.put("utm_source", "Jenkins");
+            result.put("utm_medium", "static");
+            return result;
+        }
+
+        @NonNull
+        @Override
+        protected Map<String, String> parameters(@NonNull DisplayURLContext context) {
+            Map<String, String> result = new HashMap<>();
+            String medium = context.attribute("medium");
+            if (medium != null) {
+                result.put("utm_medium", medium);
+            }
+            return result;
+        }
+    }
 }
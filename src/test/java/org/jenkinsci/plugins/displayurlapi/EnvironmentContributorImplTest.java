@@ -0,0 +1,122 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.EnvVars;
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import jenkins.model.JenkinsLocationConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class EnvironmentContributorImplTest {
+
+    @Rule
+    public JenkinsRule rule = new JenkinsRule();
+
+    @Test
+    public void parseVariables() {
+        assertNull(EnvironmentContributorImpl.parseVariables(null));
+        assertNull(EnvironmentContributorImpl.parseVariables(" "));
+        assertEquals(new HashSet<>(Arrays.asList("RUN_DISPLAY_URL", "JOB_DISPLAY_URL")),
+                EnvironmentContributorImpl.parseVariables(" RUN_DISPLAY_URL,, JOB_DISPLAY_URL ,"));
+    }
+
+    @Test
+    public void onlyConfiguredVariablesAreContributed() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        EnvironmentContributorImpl.VARIABLES = Collections.singleton(EnvironmentContributorImpl.RUN_DISPLAY_URL);
+        try {
+            EnvVars environment = b.getEnvironment(TaskListener.NULL);
+            assertEquals(DisplayURLProvider.get().getRunURL(b),
+                    environment.get(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+            assertFalse(environment.containsKey(EnvironmentContributorImpl.RUN_TESTS_DISPLAY_URL));
+            assertFalse(environment.containsKey(EnvironmentContributorImpl.JOB_DISPLAY_URL));
+            EnvironmentContributorImpl.VARIABLES = Collections.singleton(EnvironmentContributorImpl.JOB_DISPLAY_URL);
+            environment = b.getEnvironment(TaskListener.NULL);
+            assertFalse(environment.containsKey(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+            assertEquals(DisplayURLProvider.get().getJobURL(p),
+                    environment.get(EnvironmentContributorImpl.JOB_DISPLAY_URL));
+        } finally {
+            EnvironmentContributorImpl.VARIABLES = null;
+        }
+    }
+
+    @Test
+    public void followsRenames() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        String root = DisplayURLProvider.get().getRoot();
+        assertEquals(root + "job/my%20job/1/display/redirect",
+                b.getEnvironment(TaskListener.NULL).get(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+        p.renameTo("other job");
+        EnvVars environment = b.getEnvironment(TaskListener.NULL);
+        assertEquals(root + "job/other%20job/1/display/redirect",
+                environment.get(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+        assertEquals(root + "job/other%20job/display/redirect",
+                environment.get(EnvironmentContributorImpl.JOB_DISPLAY_URL));
+    }
+
+    @Test
+    public void followsRootURL() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        b.getEnvironment(TaskListener.NULL);
+        JenkinsLocationConfiguration.get().setUrl("https://jenkins.example.com/ci/");
+        EnvVars environment = b.getEnvironment(TaskListener.NULL);
+        assertEquals("https://jenkins.example.com/ci/job/my%20job/1/display/redirect",
+                environment.get(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+        assertEquals("https://jenkins.example.com/ci/job/my%20job/display/redirect",
+                environment.get(EnvironmentContributorImpl.JOB_DISPLAY_URL));
+    }
+
+    @Test
+    public void followsDecorators() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        ConfigurableDecorator.source = "first";
+        try {
+            String url = b.getEnvironment(TaskListener.NULL).get(EnvironmentContributorImpl.RUN_DISPLAY_URL);
+            assertTrue(url, url.endsWith("?result=SUCCESS&utm_source=first"));
+            // the configuration of a decorator may change without the decorators changing
+            ConfigurableDecorator.source = "second";
+            url = b.getEnvironment(TaskListener.NULL).get(EnvironmentContributorImpl.RUN_DISPLAY_URL);
+            assertTrue(url, url.endsWith("?result=SUCCESS&utm_source=second"));
+        } finally {
+            ConfigurableDecorator.source = null;
+        }
+    }
+
+    @TestExtension("followsDecorators")
+    public static class ConfigurableDecorator extends DisplayURLDecorator {
+
+        static volatile String source;
+
+        @NonNull
+        @Override
+        protected Map<String, String> parameters(@NonNull DisplayURLContext context) {
+            Map<String, String> result = new HashMap<>();
+            if (source != null) {
+                result.put("utm_source", source);
+            }
+            Run<?, ?> run = context.run();
+            if (run != null && run.getResult() != null) {
+                result.put("result", run.getResult().toString());
+            }
+            return result;
+        }
+    }
+}
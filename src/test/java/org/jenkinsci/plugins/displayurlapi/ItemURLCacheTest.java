@@ -0,0 +1,106 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Items;
+import hudson.model.Run;
+import hudson.model.TaskListener;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ItemURLCacheTest {
+
+    @Rule
+    public JenkinsRule rule = new JenkinsRule();
+
+    @Test
+    public void folderRename() throws Exception {
+        MockFolder outer = rule.createFolder("outer");
+        MockFolder inner = outer.createProject(MockFolder.class, "inner");
+        FreeStyleProject job = inner.createProject(FreeStyleProject.class, "my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(job);
+        assertURLs(job, run, "job/outer/job/inner/job/my%20job/");
+        outer.renameTo("renamed outer");
+        assertURLs(job, run, "job/renamed%20outer/job/inner/job/my%20job/");
+        inner.renameTo("renamed inner");
+        assertURLs(job, run, "job/renamed%20outer/job/renamed%20inner/job/my%20job/");
+    }
+
+    @Test
+    public void jobRename() throws Exception {
+        MockFolder folder = rule.createFolder("folder");
+        FreeStyleProject job = folder.createProject(FreeStyleProject.class, "my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(job);
+        assertURLs(job, run, "job/folder/job/my%20job/");
+        job.renameTo("other job");
+        assertURLs(job, run, "job/folder/job/other%20job/");
+    }
+
+    @Test
+    public void folderMove() throws Exception {
+        MockFolder source = rule.createFolder("source");
+        MockFolder nested = source.createProject(MockFolder.class, "nested");
+        FreeStyleProject job = nested.createProject(FreeStyleProject.class, "my job");
+        MockFolder target = rule.createFolder("target");
+        Run<?, ?> run = rule.buildAndAssertSuccess(job);
+        assertURLs(job, run, "job/source/job/nested/job/my%20job/");
+        Items.move(nested, target);
+        job = (FreeStyleProject) rule.jenkins.getItemByFullName("target/nested/my job");
+        run = job.getBuildByNumber(run.getNumber());
+        assertURLs(job, run, "job/target/job/nested/job/my%20job/");
+    }
+
+    @Test
+    public void deleteAndRecreate() throws Exception {
+        MockFolder folder = rule.createFolder("folder");
+        FreeStyleProject job = folder.createProject(FreeStyleProject.class, "my job");
+        Run<?, ?> run = rule.buildAndAssertSuccess(job);
+        assertURLs(job, run, "job/folder/job/my%20job/");
+        folder.delete();
+        folder = rule.createFolder("folder");
+        job = folder.createProject(FreeStyleProject.class, "my job");
+        run = rule.buildAndAssertSuccess(job);
+        assertURLs(job, run, "job/folder/job/my%20job/");
+    }
+
+    @Test
+    public void onlyAffectedItemsAreDiscarded() throws Exception {
+        MockFolder a = rule.createFolder("a");
+        FreeStyleProject inA = a.createProject(FreeStyleProject.class, "my job");
+        MockFolder b = rule.createFolder("b");
+        MockFolder nested = b.createProject(MockFolder.class, "nested");
+        FreeStyleProject inB = nested.createProject(FreeStyleProject.class, "my job");
+        String urlA = ItemURLCache.encodedUrl(inA);
+        assertEquals("job/b/job/nested/job/my%20job/", ItemURLCache.encodedUrl(inB));
+        b.renameTo("c");
+        assertSame(urlA, ItemURLCache.encodedUrl(inA));
+        String urlB = ItemURLCache.encodedUrl(inB);
+        assertEquals("job/c/job/nested/job/my%20job/", urlB);
+        inA.delete();
+        assertSame(urlB, ItemURLCache.encodedUrl(inB));
+        // later changes within a moved folder are not mistaken for part of the move
+        nested.renameTo("other");
+        assertEquals("job/c/job/other/job/my%20job/", ItemURLCache.encodedUrl(inB));
+        a.delete();
+        b = rule.createFolder("b");
+        MockFolder recreated = b.createProject(MockFolder.class, "nested");
+        FreeStyleProject job = recreated.createProject(FreeStyleProject.class, "my job");
+        assertEquals("job/b/job/nested/job/my%20job/", ItemURLCache.encodedUrl(job));
+        recreated.renameTo("renamed");
+        assertEquals("job/b/job/renamed/job/my%20job/", ItemURLCache.encodedUrl(job));
+    }
+
+    private static void assertURLs(FreeStyleProject job, Run<?, ?> run, String url) throws Exception {
+        String root = DisplayURLProvider.get().getRoot();
+        assertEquals(root + url, DisplayURLProvider.getDefault().getJobURL(job));
+        assertEquals(root + url + run.getNumber() + "/", DisplayURLProvider.getDefault().getRunURL(run));
+        assertEquals(root + url + "display/redirect", DisplayURLProvider.get().getJobURL(job));
+        assertEquals(root + url + run.getNumber() + "/display/redirect", DisplayURLProvider.get().getRunURL(run));
+        assertEquals(root + url + run.getNumber() + "/display/redirect",
+                run.getEnvironment(TaskListener.NULL).get(EnvironmentContributorImpl.RUN_DISPLAY_URL));
+    }
+}
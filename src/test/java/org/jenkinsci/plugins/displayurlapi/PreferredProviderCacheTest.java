@@ -0,0 +1,97 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.User;
+import hudson.security.ACL;
+import hudson.security.ACLContext;
+import jakarta.servlet.http.HttpSession;
+import java.util.HashMap;
+import java.util.Map;
+import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PreferredProviderCacheTest {
+
+    @Rule
+    public JenkinsRule rule = new JenkinsRule();
+
+    @Test
+    public void sessionHintIsTheFallbackOnceForgotten() throws Exception {
+        rule.jenkins.setSecurityRealm(rule.createDummySecurityRealm());
+        User alice = User.getById("alice", true);
+        alice.addProperty(new PreferredProviderUserProperty(OtherDisplayURLProvider.class.getName()));
+        DisplayURLProvider other = DisplayURLProvider.all().get(OtherDisplayURLProvider.class);
+        HttpSession session = session();
+        try (ACLContext ignored = ACL.as(alice)) {
+            assertSame(other, PreferredProviderCache.get(session));
+            long hints = sessionHints();
+            // remembered users do not need the session
+            assertSame(other, PreferredProviderCache.get(session));
+            assertEquals(hints, sessionHints());
+            PreferredProviderCache.forgetAll();
+            assertSame(other, PreferredProviderCache.get(session));
+            assertEquals(hints + 1, sessionHints());
+            // and the user is remembered again
+            assertSame(other, PreferredProviderCache.get(session));
+            assertEquals(hints + 1, sessionHints());
+            // stale hints are ignored
+            alice.addProperty(new PreferredProviderUserProperty(ClassicDisplayURLProvider.class.getName()));
+            PreferredProviderCache.forgetAll();
+            assertSame(DisplayURLProvider.getDefault(), PreferredProviderCache.get(session));
+            assertEquals(hints + 1, sessionHints());
+        }
+    }
+
+    private static HttpSession session() {
+        Map<String, Object> attributes = new HashMap<>();
+        HttpSession session = mock(HttpSession.class);
+        when(session.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(session).setAttribute(anyString(), any());
+        return session;
+    }
+
+    private static long sessionHints() {
+        return DisplayURLMetrics.get().getCounters().getOrDefault("provider.sessionHint", 0L);
+    }
+
+    @TestExtension
+    public static class OtherDisplayURLProvider extends DisplayURLProvider {
+
+        @NonNull
+        @Override
+        public String getRunURL(Run<?, ?> run) {
+            return DisplayURLProvider.getDefault().getRunURL(run);
+        }
+
+        @NonNull
+        @Override
+        public String getChangesURL(Run<?, ?> run) {
+            return DisplayURLProvider.getDefault().getChangesURL(run);
+        }
+
+        @Override
+        public String getTestsURL(Run<?, ?> run) {
+            return DisplayURLProvider.getDefault().getTestsURL(run);
+        }
+
+        @NonNull
+        @Override
+        public String getJobURL(Job<?, ?> job) {
+            return DisplayURLProvider.getDefault().getJobURL(job);
+        }
+    }
+}
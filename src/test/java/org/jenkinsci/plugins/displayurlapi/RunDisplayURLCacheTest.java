@@ -0,0 +1,87 @@
+package org.jenkinsci.plugins.displayurlapi;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+import jenkins.model.JenkinsLocationConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MockFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RunDisplayURLCacheTest {
+
+    @Rule
+    public JenkinsRule rule = new JenkinsRule();
+
+    @Test
+    public void hitsAreCounted() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        DisplayURLProvider.get().getRunURL(b);
+        RunDisplayURLs urls = RunDisplayURLCache.get(b);
+        assertNotNull(urls);
+        long hits = RunDisplayURLCache.stats().hitCount();
+        DisplayURLProvider.get().getTestsURL(b);
+        DisplayURLProvider.get().getChangesURL(b);
+        assertSame(urls, RunDisplayURLCache.get(b));
+        assertTrue(RunDisplayURLCache.stats().hitCount() >= hits + 2);
+        assertTrue(RunDisplayURLCache.getHitRate() > 0);
+    }
+
+    @Test
+    public void deletedRunsAreEvicted() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        DisplayURLProvider.get().getRunURL(b);
+        assertNotNull(RunDisplayURLCache.get(b));
+        b.delete();
+        assertNull(RunDisplayURLCache.get(b));
+    }
+
+    @Test
+    public void renamesAreFollowed() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        String root = DisplayURLProvider.get().getRoot();
+        assertEquals(root + "job/my%20job/1/display/redirect?page=tests", DisplayURLProvider.get().getTestsURL(b));
+        p.renameTo("other job");
+        assertNull(RunDisplayURLCache.get(b));
+        assertEquals(root + "job/other%20job/1/display/redirect?page=tests", DisplayURLProvider.get().getTestsURL(b));
+    }
+
+    @Test
+    public void onlyAffectedRunsAreDiscarded() throws Exception {
+        MockFolder folder = rule.createFolder("folder");
+        FreeStyleProject inFolder = folder.createProject(FreeStyleProject.class, "my job");
+        FreeStyleProject other = rule.createFreeStyleProject("other job");
+        Run<?, ?> b1 = rule.buildAndAssertSuccess(inFolder);
+        Run<?, ?> b2 = rule.buildAndAssertSuccess(other);
+        DisplayURLProvider.get().getRunURL(b1);
+        DisplayURLProvider.get().getRunURL(b2);
+        RunDisplayURLs urls = RunDisplayURLCache.get(b2);
+        assertNotNull(urls);
+        folder.renameTo("renamed");
+        assertNull(RunDisplayURLCache.get(b1));
+        assertSame(urls, RunDisplayURLCache.get(b2));
+        DisplayURLProvider.get().getRunURL(b1);
+        other.delete();
+        assertNotNull(RunDisplayURLCache.get(b1));
+    }
+
+    @Test
+    public void rootURLChangesAreFollowed() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject("my job");
+        Run<?, ?> b = rule.buildAndAssertSuccess(p);
+        DisplayURLProvider.get().getRunURL(b);
+        JenkinsLocationConfiguration.get().setUrl("https://jenkins.example.com/ci/");
+        assertNull(RunDisplayURLCache.get(b));
+        assertEquals("https://jenkins.example.com/ci/job/my%20job/1/display/redirect",
+                DisplayURLProvider.get().getRunURL(b));
+    }
+}
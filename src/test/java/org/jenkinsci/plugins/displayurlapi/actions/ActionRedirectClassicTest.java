@@ -4,20 +4,27 @@ import org.htmlunit.WebRequest;
 import org.htmlunit.WebResponse;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
+import hudson.model.FreeStyleBuild;
+import hudson.model.FreeStyleProject;
 import org.jenkinsci.plugins.displayurlapi.ClassicDisplayURLProvider;
 import org.jenkinsci.plugins.displayurlapi.DefaultDisplayURLProviderGlobalConfiguration;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.RunDisplayURLs;
 import org.junit.Before;
 import org.junit.Test;
 import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.MemoryAssert;
 
 import jakarta.servlet.http.HttpServletResponse;
 
+import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
 import static io.restassured.RestAssured.given;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 public class ActionRedirectClassicTest extends AbstractActionRedirectTest {
 
@@ -99,6 +106,40 @@ public class ActionRedirectClassicTest extends AbstractActionRedirectTest {
                 .header("Location", getRedirectedProvider().getTestsURL(run));
     }
 
+    @Test
+    public void testRunURLsFromBuildNumber() {
+        RunDisplayURLs expected = getRedirectedProvider().getRunDisplayURLs(run);
+        RunDisplayURLs actual = getRedirectedProvider().getRunDisplayURLs(job, run.getNumber());
+        assertEquals(expected.getRunURL(), actual.getRunURL());
+        assertEquals(expected.getArtifactsURL(), actual.getArtifactsURL());
+        assertEquals(expected.getChangesURL(), actual.getChangesURL());
+        assertEquals(expected.getTestsURL(), actual.getTestsURL());
+        assertNull(provider.getRunDisplayURLs(job, run.getNumber()));
+
+        given()
+                .urlEncodingEnabled(false)
+                .redirects().follow(false)
+                .when().get(rule.getURL() + DisplayRedirectAction.URL_NAME + "/my%20folder/my%20job/1?page=tests").then()
+                .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY)
+                .header("Location", getRedirectedProvider().getTestsURL(run));
+    }
+
+    @Test
+    public void testCachedActionsDoNotRetainRunsOrJobs() throws Exception {
+        FreeStyleProject p = rule.createFreeStyleProject();
+        FreeStyleBuild b = rule.buildAndAssertSuccess(p);
+        assertNotNull(p.getAction(JobDisplayAction.class));
+        assertNotNull(b.getAction(RunDisplayAction.class));
+        WeakReference<FreeStyleProject> jobRef = new WeakReference<>(p);
+        WeakReference<FreeStyleBuild> runRef = new WeakReference<>(b);
+        b.delete();
+        b = null;
+        MemoryAssert.assertGC(runRef, true);
+        p.delete();
+        p = null;
+        MemoryAssert.assertGC(jobRef, true);
+    }
+
     @Override
     protected DisplayURLProvider getRedirectedProvider() {
         return Iterables.find(DisplayURLProvider.all(), Predicates.instanceOf(ClassicDisplayURLProvider.class));
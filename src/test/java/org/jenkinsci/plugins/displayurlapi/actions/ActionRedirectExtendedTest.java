@@ -5,15 +5,24 @@ import com.google.common.collect.Iterables;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.model.Job;
 import hudson.model.Run;
+import hudson.model.User;
+import java.net.URL;
+import org.htmlunit.HttpMethod;
+import org.htmlunit.WebRequest;
+import org.htmlunit.WebResponse;
+import org.jenkinsci.plugins.displayurlapi.ClassicDisplayURLProvider;
 import org.jenkinsci.plugins.displayurlapi.DefaultDisplayURLProviderGlobalConfiguration;
 import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.jenkinsci.plugins.displayurlapi.user.PreferredProviderUserProperty;
 import org.junit.Before;
 import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
 import org.jvnet.hudson.test.TestExtension;
 
 import jakarta.servlet.http.HttpServletResponse;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
 import static org.junit.Assert.assertEquals;
 
 public class ActionRedirectExtendedTest extends AbstractActionRedirectTest {
@@ -85,6 +94,134 @@ public class ActionRedirectExtendedTest extends AbstractActionRedirectTest {
             .header("Location", getYetAnotherRedirectedProvider().getChangesURL(run));
     }
 
+    @Test
+    public void testDirectRedirect() throws Exception {
+        String root = rule.getURL() + DisplayRedirectAction.URL_NAME + "/my%20folder/my%20job";
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(root).then()
+            .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY)
+            .header("Location", getRedirectedProvider().getJobURL(job));
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(root + "/1").then()
+            .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY)
+            .header("Location", getRedirectedProvider().getRunURL(run));
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(root + "/1?page=changes&provider=YetAnotherDisplayURLProvider").then()
+            .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY)
+            .header("Location", getYetAnotherRedirectedProvider().getChangesURL(run));
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(root + "/2").then()
+            .statusCode(HttpServletResponse.SC_NOT_FOUND);
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(rule.getURL() + DisplayRedirectAction.URL_NAME + "/my%20folder/no%20job/1").then()
+            .statusCode(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    @Test
+    public void testRedirectCaching() throws Exception {
+        given()
+            .urlEncodingEnabled(false)
+            .redirects().follow(false)
+            .when().get(provider.getRunURL(run) + "?provider=YetAnotherDisplayURLProvider").then()
+            .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY)
+            .header("Cache-Control", "private, no-cache");
+        AbstractDisplayAction.REDIRECT_STATUS = HttpServletResponse.SC_MOVED_PERMANENTLY;
+        try {
+            // permanent redirects would be cached by browsers irrespective of the preference of the user
+            given()
+                .urlEncodingEnabled(false)
+                .redirects().follow(false)
+                .when().get(provider.getRunURL(run)).then()
+                .statusCode(HttpServletResponse.SC_MOVED_TEMPORARILY);
+        } finally {
+            AbstractDisplayAction.REDIRECT_STATUS = HttpServletResponse.SC_MOVED_TEMPORARILY;
+        }
+        AbstractDisplayAction.REDIRECT_STATUS = HttpServletResponse.SC_SEE_OTHER;
+        AbstractDisplayAction.REDIRECT_MAX_AGE = 60;
+        try {
+            given()
+                .urlEncodingEnabled(false)
+                .redirects().follow(false)
+                .when().get(provider.getRunURL(run) + "?provider=YetAnotherDisplayURLProvider").then()
+                .statusCode(HttpServletResponse.SC_SEE_OTHER)
+                .header("Location", getYetAnotherRedirectedProvider().getRunURL(run))
+                .header("Cache-Control", "private, max-age=60");
+            given()
+                .urlEncodingEnabled(false)
+                .redirects().follow(false)
+                .when().head(provider.getRunURL(run)).then()
+                .statusCode(HttpServletResponse.SC_SEE_OTHER)
+                .header("Location", getRedirectedProvider().getRunURL(run))
+                .header("Cache-Control", "private, max-age=60");
+            // the redirects of a logged in user follow their preference, for HEAD as for GET
+            rule.jenkins.setSecurityRealm(rule.createDummySecurityRealm());
+            User.getById("alice", true)
+                    .addProperty(new PreferredProviderUserProperty(YetAnotherDisplayURLProvider.class.getName()));
+            JenkinsRule.WebClient wc = rule.createWebClient()
+                    .withRedirectEnabled(false)
+                    .withThrowExceptionOnFailingStatusCode(false)
+                    .login("alice");
+            WebResponse rsp = wc.loadWebResponse(new WebRequest(new URL(provider.getRunURL(run)), HttpMethod.HEAD));
+            assertEquals(HttpServletResponse.SC_SEE_OTHER, rsp.getStatusCode());
+            assertEquals(getYetAnotherRedirectedProvider().getRunURL(run), rsp.getResponseHeaderValue("Location"));
+            assertEquals("private, no-cache", rsp.getResponseHeaderValue("Cache-Control"));
+            rsp = wc.loadWebResponse(new WebRequest(new URL(provider.getRunURL(run)), HttpMethod.GET));
+            assertEquals(getYetAnotherRedirectedProvider().getRunURL(run), rsp.getResponseHeaderValue("Location"));
+            assertEquals("private, no-cache", rsp.getResponseHeaderValue("Cache-Control"));
+        } finally {
+            AbstractDisplayAction.REDIRECT_STATUS = HttpServletResponse.SC_MOVED_TEMPORARILY;
+            AbstractDisplayAction.REDIRECT_MAX_AGE = 0;
+        }
+    }
+
+    @Test
+    public void testRedirectFollowsUserPreference() throws Exception {
+        rule.jenkins.setSecurityRealm(rule.createDummySecurityRealm());
+        User alice = User.getById("alice", true);
+        JenkinsRule.WebClient wc = rule.createWebClient()
+                .withRedirectEnabled(false)
+                .withThrowExceptionOnFailingStatusCode(false)
+                .login("alice");
+        assertEquals(getRedirectedProvider().getRunURL(run), wc.getPage(new WebRequest(new URL(provider.getRunURL(run))))
+                .getWebResponse().getResponseHeaderValue("Location"));
+        // the preference is remembered in the session until the user changes it
+        alice.addProperty(new PreferredProviderUserProperty(YetAnotherDisplayURLProvider.class.getName()));
+        assertEquals(getYetAnotherRedirectedProvider().getRunURL(run),
+                wc.getPage(new WebRequest(new URL(provider.getRunURL(run))))
+                        .getWebResponse().getResponseHeaderValue("Location"));
+        DefaultDisplayURLProviderGlobalConfiguration.get().setProviderId(ClassicDisplayURLProvider.class.getName());
+        assertEquals(getYetAnotherRedirectedProvider().getRunURL(run),
+                wc.getPage(new WebRequest(new URL(provider.getRunURL(run))))
+                        .getWebResponse().getResponseHeaderValue("Location"));
+    }
+
+    @Test
+    public void testExportedUrls() throws Exception {
+        job.scheduleBuild2(0).get();
+        given()
+            .when().get(rule.getURL() + job.getUrl()
+                    + "api/json?tree=builds[actions[displayUrl,artifactsUrl,changesUrl,testsUrl]]").then()
+            .statusCode(HttpServletResponse.SC_OK)
+            .body("builds[1].actions.find { it.displayUrl }.displayUrl", equalTo(getRedirectedProvider().getRunURL(run)))
+            .body("builds[1].actions.find { it.artifactsUrl }.artifactsUrl",
+                    equalTo(getRedirectedProvider().getArtifactsURL(run)))
+            .body("builds[1].actions.find { it.changesUrl }.changesUrl",
+                    equalTo(getRedirectedProvider().getChangesURL(run)))
+            .body("builds[1].actions.find { it.testsUrl }.testsUrl", equalTo(getRedirectedProvider().getTestsURL(run)))
+            .body("builds[0].actions.find { it.displayUrl }.displayUrl",
+                    equalTo(getRedirectedProvider().getRunURL(job.getLastBuild())));
+    }
+
     @Test
     public void testUrls() {
         String root = DisplayURLProvider.get().getRoot();
@@ -0,0 +1,40 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.PluginWrapper;
+import hudson.model.Run;
+import java.util.HashMap;
+import java.util.Map;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLContext;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLDecorator;
+
+/**
+ * A {@link DisplayURLDecorator} modelled after the typical {@code utm_*} tagging decorators. The first decorator
+ * consults the context (plugin and run) while the additional ones only contribute constant parameters.
+ */
+class BenchmarkDecorator extends DisplayURLDecorator {
+
+    private final int index;
+
+    BenchmarkDecorator(int index) {
+        this.index = index;
+    }
+
+    @NonNull
+    @Override
+    protected Map<String, String> parameters(@NonNull DisplayURLContext context) {
+        Map<String, String> result = new HashMap<>();
+        if (index == 0) {
+            PluginWrapper wrapper = context.plugin();
+            result.put("utm_source", "Jenkins");
+            result.put("utm_campaign", wrapper == null ? "jenkins" : wrapper.getShortName());
+            Run<?, ?> run = context.run();
+            if (run != null) {
+                result.put("utm_term", run.getExternalizableId());
+            }
+        } else {
+            result.put("utm_content" + index, "decorator " + index);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,45 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import jenkins.benchmark.jmh.BenchmarkFinder;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all the {@link jenkins.benchmark.jmh.JmhBenchmark} annotated benchmarks of this plugin. Not picked up by the
+ * regular test run, use {@code mvn test -Dbenchmark} to run it. Results are written to {@code jmh-report.json}.
+ * <p>
+ * Throughput and sample time (latency percentiles) are measured for every benchmark, and the {@link GCProfiler}
+ * reports the bytes allocated per operation as {@code gc.alloc.rate.norm}.
+ */
+public class BenchmarkRunner {
+
+    @Test
+    public void runJmhBenchmarks() throws Exception {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .mode(Mode.Throughput)
+                .mode(Mode.SampleTime)
+                .timeUnit(TimeUnit.MICROSECONDS)
+                .warmupIterations(Integer.getInteger("benchmark.warmupIterations", 3))
+                .measurementIterations(Integer.getInteger("benchmark.measurementIterations", 5))
+                .threads(Integer.getInteger("benchmark.threads", 1))
+                .forks(Integer.getInteger("benchmark.forks", 1))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-report.json");
+        String include = System.getProperty("benchmark.include");
+        if (include != null && !include.isEmpty()) {
+            options.include(include);
+        } else {
+            new BenchmarkFinder(getClass()).findBenchmarks(options);
+        }
+        new Runner(options.build()).run();
+    }
+}
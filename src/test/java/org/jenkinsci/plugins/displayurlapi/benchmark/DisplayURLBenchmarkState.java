@@ -0,0 +1,55 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import hudson.ExtensionList;
+import hudson.model.FreeStyleProject;
+import hudson.model.Job;
+import hudson.model.Run;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLDecorator;
+import org.jvnet.hudson.test.MockFolder;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Starts Jenkins with the requested number of {@link DisplayURLDecorator}s registered and a single completed build of
+ * a job nested within the requested number of folders.
+ */
+public abstract class DisplayURLBenchmarkState extends JmhBenchmarkState {
+
+    /**
+     * The number of registered {@link DisplayURLDecorator}s.
+     */
+    @Param({"0", "1", "3"})
+    public int decorators;
+
+    /**
+     * The number of folders the job is nested in.
+     */
+    @Param({"0", "6"})
+    public int folderDepth;
+
+    Job<?, ?> job;
+
+    Run<?, ?> run;
+
+    @Override
+    public void setup() throws Exception {
+        Jenkins jenkins = Jenkins.get();
+        ExtensionList<DisplayURLDecorator> list = ExtensionList.lookup(DisplayURLDecorator.class);
+        for (int i = 0; i < decorators; i++) {
+            list.add(0, new BenchmarkDecorator(i));
+        }
+        MockFolder folder = null;
+        for (int i = 0; i < folderDepth; i++) {
+            String name = "folder " + i;
+            folder = folder == null
+                    ? jenkins.createProject(MockFolder.class, name)
+                    : folder.createProject(MockFolder.class, name);
+        }
+        FreeStyleProject project = folder == null
+                ? jenkins.createProject(FreeStyleProject.class, "my job")
+                : folder.createProject(FreeStyleProject.class, "my job");
+        job = project;
+        run = project.scheduleBuild2(0).get();
+    }
+}
@@ -0,0 +1,60 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the cost of opening and closing a {@link DisplayURLContext}, with and without plugin inference, from call
+ * stacks of various depths (Pipeline builds typically call from very deep stacks).
+ */
+@JmhBenchmark
+public class DisplayURLContextBenchmark {
+
+    public static class ContextState extends JmhBenchmarkState {
+
+        /**
+         * The number of additional frames on the stack when the context is opened.
+         */
+        @Param({"0", "200"})
+        public int stackDepth;
+    }
+
+    @Benchmark
+    public Object open(ContextState state) {
+        return atDepth(state.stackDepth, true);
+    }
+
+    @Benchmark
+    public Object openWithoutGuessing(ContextState state) {
+        return atDepth(state.stackDepth, false);
+    }
+
+    @Benchmark
+    public Object openAndQueryPlugin(ContextState state) {
+        try (DisplayURLContext ctx = DisplayURLContext.open()) {
+            return ctx.plugin();
+        }
+    }
+
+    @Benchmark
+    public Object openNested(ContextState state) {
+        try (DisplayURLContext outer = DisplayURLContext.open(false)) {
+            outer.attribute("medium", "benchmark");
+            try (DisplayURLContext inner = DisplayURLContext.open()) {
+                return inner.attribute("medium");
+            }
+        }
+    }
+
+    private static Object atDepth(int depth, boolean guessPlugin) {
+        if (depth > 0) {
+            return atDepth(depth - 1, guessPlugin);
+        }
+        try (DisplayURLContext ctx = DisplayURLContext.open(guessPlugin)) {
+            return ctx;
+        }
+    }
+}
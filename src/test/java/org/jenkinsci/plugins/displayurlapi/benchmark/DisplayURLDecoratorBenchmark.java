@@ -0,0 +1,59 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLContext;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLDecorator;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Measures {@link DisplayURLDecorator#decorate(DisplayURLContext, String)} in isolation, for URLs without a query, for
+ * URLs with a query that has to be merged with the decorator parameters and for URLs that are already decorated.
+ */
+@JmhBenchmark
+public class DisplayURLDecoratorBenchmark {
+
+    public static class DecoratorState extends DisplayURLBenchmarkState {
+
+        String url;
+
+        String urlWithQuery;
+
+        String decoratedUrl;
+
+        @Override
+        public void setup() throws Exception {
+            super.setup();
+            url = DisplayURLProvider.getDefault().getRunURL(run) + "display/redirect";
+            urlWithQuery = url + "?page=changes&utm_source=Mail&flag";
+            try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+                ctx.run(run);
+                decoratedUrl = DisplayURLDecorator.decorate(ctx, url + "?page=changes");
+            }
+        }
+    }
+
+    @Benchmark
+    public String decorate(DecoratorState state) {
+        try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+            ctx.run(state.run);
+            return DisplayURLDecorator.decorate(ctx, state.url);
+        }
+    }
+
+    @Benchmark
+    public String decorateWithQuery(DecoratorState state) {
+        try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+            ctx.run(state.run);
+            return DisplayURLDecorator.decorate(ctx, state.urlWithQuery);
+        }
+    }
+
+    @Benchmark
+    public String decorateAlreadyDecorated(DecoratorState state) {
+        try (DisplayURLContext ctx = DisplayURLContext.open(false)) {
+            ctx.run(state.run);
+            return DisplayURLDecorator.decorate(ctx, state.decoratedUrl);
+        }
+    }
+}
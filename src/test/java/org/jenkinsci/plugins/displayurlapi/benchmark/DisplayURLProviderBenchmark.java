@@ -0,0 +1,82 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import jenkins.benchmark.jmh.JmhBenchmark;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLContext;
+import org.jenkinsci.plugins.displayurlapi.DisplayURLProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Measures the URLs generated by {@link DisplayURLProvider#get()}, i.e. what notifier plugins call for every link.
+ */
+@JmhBenchmark
+public class DisplayURLProviderBenchmark {
+
+    public static class ProviderState extends DisplayURLBenchmarkState {
+
+        /**
+         * When {@code false} the URL is generated within an outer {@code DisplayURLContext.open(false)} so that the
+         * plugin is never inferred, as is the case for Jenkins core callers.
+         */
+        @Param({"true", "false"})
+        public boolean guessPlugin;
+
+        DisplayURLProvider provider;
+
+        @Override
+        public void setup() throws Exception {
+            super.setup();
+            provider = DisplayURLProvider.get();
+        }
+    }
+
+    @Benchmark
+    public String runURL(ProviderState state) {
+        if (state.guessPlugin) {
+            return state.provider.getRunURL(state.run);
+        }
+        try (DisplayURLContext unused = DisplayURLContext.open(false)) {
+            return state.provider.getRunURL(state.run);
+        }
+    }
+
+    @Benchmark
+    public String artifactsURL(ProviderState state) {
+        if (state.guessPlugin) {
+            return state.provider.getArtifactsURL(state.run);
+        }
+        try (DisplayURLContext unused = DisplayURLContext.open(false)) {
+            return state.provider.getArtifactsURL(state.run);
+        }
+    }
+
+    @Benchmark
+    public String changesURL(ProviderState state) {
+        if (state.guessPlugin) {
+            return state.provider.getChangesURL(state.run);
+        }
+        try (DisplayURLContext unused = DisplayURLContext.open(false)) {
+            return state.provider.getChangesURL(state.run);
+        }
+    }
+
+    @Benchmark
+    public String testsURL(ProviderState state) {
+        if (state.guessPlugin) {
+            return state.provider.getTestsURL(state.run);
+        }
+        try (DisplayURLContext unused = DisplayURLContext.open(false)) {
+            return state.provider.getTestsURL(state.run);
+        }
+    }
+
+    @Benchmark
+    public String jobURL(ProviderState state) {
+        if (state.guessPlugin) {
+            return state.provider.getJobURL(state.job);
+        }
+        try (DisplayURLContext unused = DisplayURLContext.open(false)) {
+            return state.provider.getJobURL(state.job);
+        }
+    }
+}
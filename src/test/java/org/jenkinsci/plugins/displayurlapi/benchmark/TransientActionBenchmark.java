@@ -0,0 +1,62 @@
+package org.jenkinsci.plugins.displayurlapi.benchmark;
+
+import hudson.model.FreeStyleProject;
+import hudson.model.Run;
+import java.util.ArrayList;
+import java.util.List;
+import jenkins.benchmark.jmh.JmhBenchmark;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import jenkins.model.Jenkins;
+import org.jenkinsci.plugins.displayurlapi.actions.AbstractDisplayAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures listing the actions of a job and of all its builds, as done when rendering a job page or serving its REST
+ * API, with and without {@link AbstractDisplayAction#CACHE_ACTIONS}. Compare the {@code gc.alloc.rate.norm} of both.
+ */
+@JmhBenchmark
+public class TransientActionBenchmark {
+
+    public static class JobPageState extends JmhBenchmarkState {
+
+        /**
+         * Whether the transient display actions are cached.
+         */
+        @Param({"true", "false"})
+        public boolean cacheActions;
+
+        /**
+         * The number of builds of the job.
+         */
+        @Param({"100"})
+        public int builds;
+
+        FreeStyleProject job;
+
+        final List<Run<?, ?>> runs = new ArrayList<>();
+
+        @Override
+        public void setup() throws Exception {
+            AbstractDisplayAction.CACHE_ACTIONS = cacheActions;
+            job = Jenkins.get().createProject(FreeStyleProject.class, "my job");
+            for (int i = 0; i < builds; i++) {
+                runs.add(job.scheduleBuild2(0).get());
+            }
+        }
+
+        @Override
+        public void tearDown() {
+            AbstractDisplayAction.CACHE_ACTIONS = true;
+        }
+    }
+
+    @Benchmark
+    public void jobPage(JobPageState state, Blackhole blackhole) {
+        blackhole.consume(state.job.getAllActions());
+        for (Run<?, ?> run : state.runs) {
+            blackhole.consume(run.getAllActions());
+        }
+    }
+}